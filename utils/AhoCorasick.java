@@ -0,0 +1,128 @@
+package utils;
+
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Collection;
+
+/**An Aho-Corasick automaton telling whether a text contains any of a
+ * set of keywords, ignoring case, in one pass over the text whatever the
+ * number of keywords.
+ * <p>Transitions live in one open addressing table keyed by
+ * (state, char), so no object is made per node. Once built it is never
+ * changed and can be shared between threads.
+ * */
+final class AhoCorasick {
+    private static final int NONE = -1;
+    //goto table: key = state << 16 | char, value = next state
+    private final long[] keys;
+    private final int[] values;
+    //per state: failure link, whether a keyword ends here (or in its failure chain)
+    private final int[] fail;
+    private final boolean[] output;
+    //per state: first child and next sibling, only used while building
+    private int[] firstChild;
+    private int[] nextSibling;
+    private char[] label;
+    private int states;
+
+    /**Build the automaton for the keywords, an empty keyword matching every text.
+     * */
+    AhoCorasick(Collection<String> keywords) {
+        int capacity = 1;
+        for (String keyword : keywords) capacity += keyword.length();
+        fail = new int[capacity];
+        output = new boolean[capacity];
+        firstChild = new int[capacity];
+        nextSibling = new int[capacity];
+        label = new char[capacity];
+        Arrays.fill(firstChild, NONE);
+        int slots = Integer.highestOneBit(Math.max(16, capacity * 2 - 1)) << 1;
+        keys = new long[slots];
+        values = new int[slots];
+        Arrays.fill(keys, -1L);
+        states = 1;
+
+        for (String keyword : keywords) {
+            int state = 0;
+            for (int i = 0; i < keyword.length(); i++) {
+                char c = Character.toLowerCase(keyword.charAt(i));
+                int next = next(state, c);
+                if (next == NONE) {
+                    next = states++;
+                    put(state, c, next);
+                    label[next] = c;
+                    nextSibling[next] = firstChild[state];
+                    firstChild[state] = next;
+                }
+                state = next;
+            }
+            output[state] = true;
+        }
+        linkFailures();
+        firstChild = null;
+        nextSibling = null;
+        label = null;
+    }
+
+    /**Return true when the text contains at least one of the keywords.
+     * */
+    boolean matches(CharSequence text) {
+        if (output[0]) return true;
+        int state = 0;
+        for (int i = 0; i < text.length(); i++) {
+            char c = Character.toLowerCase(text.charAt(i));
+            int next = next(state, c);
+            while (next == NONE && state != 0) {
+                state = fail[state];
+                next = next(state, c);
+            }
+            state = next == NONE ? 0 : next;
+            if (output[state]) return true;
+        }
+        return false;
+    }
+
+    //breadth first, so the failure link of a state's parent is always known
+    private void linkFailures() {
+        ArrayDeque<Integer> queue = new ArrayDeque<>();
+        for (int child = firstChild[0]; child != NONE; child = nextSibling[child]) {
+            fail[child] = 0;
+            queue.add(child);
+        }
+        while (!queue.isEmpty()) {
+            int state = queue.poll();
+            for (int child = firstChild[state]; child != NONE; child = nextSibling[child]) {
+                int link = fail[state];
+                int target = next(link, label[child]);
+                while (target == NONE && link != 0) {
+                    link = fail[link];
+                    target = next(link, label[child]);
+                }
+                fail[child] = target == NONE ? 0 : target;
+                output[child] |= output[fail[child]];
+                queue.add(child);
+            }
+        }
+    }
+
+    private int next(int state, char c) {
+        long key = ((long) state << 16) | c;
+        for (int slot = slot(key); ; slot = (slot + 1) & (keys.length - 1)) {
+            if (keys[slot] == key) return values[slot];
+            if (keys[slot] == -1L) return NONE;
+        }
+    }
+
+    private void put(int state, char c, int next) {
+        long key = ((long) state << 16) | c;
+        int slot = slot(key);
+        while (keys[slot] != -1L) slot = (slot + 1) & (keys.length - 1);
+        keys[slot] = key;
+        values[slot] = next;
+    }
+
+    private int slot(long key) {
+        long mixed = key * 0x9E3779B97F4A7C15L;
+        return (int) (mixed >>> 32) & (keys.length - 1);
+    }
+}
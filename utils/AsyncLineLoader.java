@@ -0,0 +1,145 @@
+package utils;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.AsynchronousFileChannel;
+import java.nio.channels.CompletionHandler;
+import java.nio.charset.Charset;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CodingErrorAction;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Consumer;
+
+/**Reads a file chunk by chunk through an AsynchronousFileChannel for
+ * FileIO.fetchAsync, one read in flight at a time. Bytes of a character
+ * cut by a chunk boundary stay in the buffer for the next read.
+ * */
+final class AsyncLineLoader implements CompletionHandler<Integer, Long> {
+    private static final int CHUNK = 64 * 1024;
+    private final AsynchronousFileChannel channel;
+    private final Consumer<List<String>> onChunk;
+    private final CompletableFuture<AsyncLineLoader> result = new CompletableFuture<>();
+    private final ByteBuffer bytes = ByteBuffer.allocate(CHUNK);
+    private final CharBuffer chars = CharBuffer.allocate(CHUNK);
+    private final CharsetDecoder decoder;
+    private final StringBuilder partial = new StringBuilder();
+    private final ArrayList<String> loaded = new ArrayList<>();
+    private ArrayList<String> chunk = new ArrayList<>();
+    //the last char was a '\r', so a '\n' right after it ends no other line
+    private boolean afterReturn;
+    private long length;
+
+    private AsyncLineLoader(AsynchronousFileChannel channel, Charset charset, Consumer<List<String>> onChunk) {
+        this.channel = channel;
+        this.onChunk = onChunk;
+        this.decoder = charset.newDecoder()
+                .onMalformedInput(CodingErrorAction.REPLACE)
+                .onUnmappableCharacter(CodingErrorAction.REPLACE);
+    }
+
+    /**Start reading the file in the background.
+     * @param onChunk receives each chunk of lines, in file order.
+     * @return a future completing with the loader once the whole file is
+     * read. Cancelling it stops the reading and closes the file.
+     * */
+    static CompletableFuture<AsyncLineLoader> load(Path path, Charset charset, Consumer<List<String>> onChunk) {
+        AsynchronousFileChannel channel;
+        try {
+            channel = AsynchronousFileChannel.open(path, StandardOpenOption.READ);
+        } catch (IOException e) {
+            return CompletableFuture.failedFuture(e);
+        }
+        AsyncLineLoader loader = new AsyncLineLoader(channel, charset, onChunk);
+        //closing the channel also aborts a pending read once cancelled
+        loader.result.whenComplete((value, error) -> {
+            try {
+                channel.close();
+            } catch (IOException e) {
+                System.out.println(e.getMessage());
+            }
+        });
+        loader.read(0);
+        return loader.result;
+    }
+
+    /**Return every line read, each ending with "\n".
+     * */
+    List<String> lines() {
+        return loaded;
+    }
+
+    /**Return how many bytes were read.
+     * */
+    long length() {
+        return length;
+    }
+
+    private void read(long position) {
+        if (result.isDone()) return;
+        channel.read(bytes, position, position, this);
+    }
+
+    @Override
+    public void completed(Integer read, Long position) {
+        if (result.isDone()) return;
+        try {
+            boolean end = read < 0;
+            bytes.flip();
+            while (decoder.decode(bytes, chars, end).isOverflow()) drain();
+            bytes.compact();
+            if (end) {
+                while (decoder.flush(chars).isOverflow()) drain();
+                drain();
+                if (!partial.isEmpty()) addLine();
+            } else {
+                drain();
+            }
+            if (!chunk.isEmpty()) {
+                onChunk.accept(Collections.unmodifiableList(chunk));
+                chunk = new ArrayList<>();
+            }
+
+            if (!end) {
+                read(position + read);
+                return;
+            }
+            length = position;
+            result.complete(this);
+        } catch (Exception e) {
+            result.completeExceptionally(e);
+        }
+    }
+
+    @Override
+    public void failed(Throwable error, Long position) {
+        result.completeExceptionally(error);
+    }
+
+    private void drain() {
+        chars.flip();
+        while (chars.hasRemaining()) {
+            char c = chars.get();
+            if (c == '\n' && afterReturn) {
+                afterReturn = false;
+                continue;
+            }
+            afterReturn = c == '\r';
+            if (c == '\n' || c == '\r') addLine();
+            else partial.append(c);
+        }
+        chars.clear();
+    }
+
+    private void addLine() {
+        String line = partial.append('\n').toString();
+        partial.setLength(0);
+        loaded.add(line);
+        chunk.add(line);
+    }
+}
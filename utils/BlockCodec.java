@@ -0,0 +1,88 @@
+package utils;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.zip.*;
+
+/**Compresses the blocks of a FileIO file, see FileIO.useCodec().
+ * Each block is compressed on its own so it can be read back without
+ * the blocks around it. Implement this to plug in another codec.
+ * @author hatohui
+ * */
+public interface BlockCodec {
+    /**Compress the given range of bytes into a new array.
+     * */
+    byte[] compress(byte[] data, int offset, int length) throws IOException;
+
+    /**Decompress a block back into exactly rawLength bytes.
+     * @throws IOException when the block is corrupt.
+     * */
+    byte[] decompress(byte[] data, int offset, int length, int rawLength) throws IOException;
+
+    /**zlib deflate, the smallest framing of the JDK codecs.
+     * */
+    BlockCodec DEFLATE = new BlockCodec() {
+        @Override
+        public byte[] compress(byte[] data, int offset, int length) {
+            Deflater deflater = new Deflater();
+            try {
+                deflater.setInput(data, offset, length);
+                deflater.finish();
+                ByteArrayOutputStream out = new ByteArrayOutputStream(Math.max(64, length / 4));
+                byte[] buffer = new byte[8192];
+                while (!deflater.finished()) {
+                    out.write(buffer, 0, deflater.deflate(buffer));
+                }
+                return out.toByteArray();
+            } finally {
+                deflater.end();
+            }
+        }
+
+        @Override
+        public byte[] decompress(byte[] data, int offset, int length, int rawLength) throws IOException {
+            Inflater inflater = new Inflater();
+            try {
+                inflater.setInput(data, offset, length);
+                byte[] raw = new byte[rawLength];
+                int filled = 0;
+                while (filled < rawLength && !inflater.finished()) {
+                    int read = inflater.inflate(raw, filled, rawLength - filled);
+                    if (read == 0 && (inflater.needsInput() || inflater.needsDictionary())) break;
+                    filled += read;
+                }
+                if (filled != rawLength)
+                    throw new IOException("Corrupt block, expected " + rawLength + " bytes but got " + filled);
+                return raw;
+            } catch (DataFormatException e) {
+                throw new IOException("Corrupt block: " + e.getMessage(), e);
+            } finally {
+                inflater.end();
+            }
+        }
+    };
+
+    /**gzip, each block being a complete gzip member.
+     * */
+    BlockCodec GZIP = new BlockCodec() {
+        @Override
+        public byte[] compress(byte[] data, int offset, int length) throws IOException {
+            ByteArrayOutputStream out = new ByteArrayOutputStream(Math.max(64, length / 4));
+            try (GZIPOutputStream gzip = new GZIPOutputStream(out)) {
+                gzip.write(data, offset, length);
+            }
+            return out.toByteArray();
+        }
+
+        @Override
+        public byte[] decompress(byte[] data, int offset, int length, int rawLength) throws IOException {
+            try (GZIPInputStream gzip = new GZIPInputStream(new ByteArrayInputStream(data, offset, length))) {
+                byte[] raw = gzip.readNBytes(rawLength);
+                if (raw.length != rawLength)
+                    throw new IOException("Corrupt block, expected " + rawLength + " bytes but got " + raw.length);
+                return raw;
+            }
+        }
+    };
+}
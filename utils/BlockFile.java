@@ -0,0 +1,125 @@
+package utils;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+
+/**Reads and writes files made of independently compressed blocks.
+ * <p>Each block is [magic][raw length][compressed length][payload] and
+ * holds whole lines only, so blocks can be decoded in any order, new
+ * blocks can be appended to the end of the file and any block can be
+ * read on its own once the block positions are known.
+ * */
+final class BlockFile {
+    private static final int MAGIC = 0x46494F42;
+    private static final int HEADER = 12;
+    private static final int BLOCK_SIZE = 64 * 1024;
+
+    private BlockFile() {
+    }
+
+    /**Compress the lines into blocks, ready to be appended to a file.
+     * */
+    static byte[] encode(List<String> lines, BlockCodec codec, Charset charset) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        write(out, lines, codec, charset);
+        return out.toByteArray();
+    }
+
+    /**Compress the lines into blocks of about 64KB of text each.
+     * */
+    static void write(OutputStream out, List<String> lines, BlockCodec codec, Charset charset) throws IOException {
+        ByteArrayOutputStream block = new ByteArrayOutputStream(BLOCK_SIZE + 1024);
+        for (String line : lines) {
+            block.write(line.getBytes(charset));
+            if (block.size() >= BLOCK_SIZE) flush(out, block, codec);
+        }
+        if (block.size() > 0) flush(out, block, codec);
+    }
+
+    /**Return where every complete block starts. A block cut short by
+     * a crash at the end of the file is left out.
+     * @throws IOException when the file isn't made of blocks or a block is corrupt.
+     * */
+    static long[] positions(FileChannel channel) throws IOException {
+        long[] positions = new long[16];
+        int count = 0;
+        long size = channel.size();
+        long position = 0;
+        ByteBuffer header = ByteBuffer.allocate(HEADER);
+        while (position + HEADER <= size) {
+            header.clear();
+            channel.read(header, position);
+            if (header.getInt(0) != MAGIC)
+                throw new IOException("Not a block compressed file, bad block at " + position);
+            if (header.getInt(4) < 0 || header.getInt(8) < 0)
+                throw new IOException("Corrupt block at " + position + ", negative length.");
+            long next = position + HEADER + header.getInt(8);
+            if (next > size) break;
+            if (count == positions.length) positions = Arrays.copyOf(positions, count * 2);
+            positions[count++] = position;
+            position = next;
+        }
+        return Arrays.copyOf(positions, count);
+    }
+
+    /**Decode the lines of the block starting at the given position,
+     * each one ending with "\n".
+     * */
+    static List<String> readBlock(FileChannel channel, long position, BlockCodec codec,
+                                  Charset charset) throws IOException {
+        ByteBuffer header = ByteBuffer.allocate(HEADER);
+        channel.read(header, position);
+        int rawLength = header.getInt(4);
+        int length = header.getInt(8);
+        if (rawLength < 0 || length < 0)
+            throw new IOException("Corrupt block at " + position + ", negative length.");
+        byte[] payload = new byte[length];
+        ByteBuffer buffer = ByteBuffer.wrap(payload);
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer, position + HEADER + buffer.position()) < 0)
+                throw new IOException("Block at " + position + " is cut short.");
+        }
+        byte[] raw = codec.decompress(payload, 0, payload.length, rawLength);
+        return ParallelLineLoader.decodeLines(ByteBuffer.wrap(raw), charset);
+    }
+
+    /**Decode every block of the file on the given pool, in file order.
+     * */
+    static List<List<String>> readAll(Path path, BlockCodec codec, Charset charset,
+                                      ForkJoinPool pool) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            ArrayList<ForkJoinTask<List<String>>> tasks = new ArrayList<>();
+            for (long position : positions(channel)) {
+                tasks.add(pool.submit(() -> readBlock(channel, position, codec, charset)));
+            }
+            ArrayList<List<String>> blocks = new ArrayList<>(tasks.size());
+            for (ForkJoinTask<List<String>> task : tasks) {
+                blocks.add(task.join());
+            }
+            return blocks;
+        } catch (RuntimeException e) {
+            if (e.getCause() instanceof IOException) throw (IOException) e.getCause();
+            throw e;
+        }
+    }
+
+    private static void flush(OutputStream out, ByteArrayOutputStream block, BlockCodec codec) throws IOException {
+        byte[] raw = block.toByteArray();
+        byte[] compressed = codec.compress(raw, 0, raw.length);
+        ByteBuffer header = ByteBuffer.allocate(HEADER).putInt(MAGIC).putInt(raw.length).putInt(compressed.length);
+        out.write(header.array());
+        out.write(compressed);
+        block.reset();
+    }
+}
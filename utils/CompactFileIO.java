@@ -0,0 +1,166 @@
+package utils;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.StandardOpenOption;
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Objects;
+import java.util.RandomAccess;
+
+/**A FileIO keeping every line as UTF-8 bytes in one shared byte
+ * array, with an int[] table of where each line starts. The array
+ * holds the lines as they are in the file ("\r\n" becomes "\n"), so
+ * the memory used stays close to the size of the file on disk.
+ * <p>Lines are only turned into Strings when accessed through the
+ * List view, and like FileIO each one ends with "\n". The file must be
+ * UTF-8 (or ASCII) and smaller than 2GB.
+ * @author hatohui
+ * */
+public class CompactFileIO extends AbstractList<String> implements RandomAccess {
+    private final File file;
+    private byte[] arena = new byte[0];
+    private int used;
+    //offsets[i] is where line i starts, offsets[size] is where the next line goes
+    private int[] offsets = new int[1];
+    private int size;
+    //bytes [0, syncedBytes) are known to be in the file
+    private int syncedBytes;
+
+    /**Constructor for CompactFileIO
+     * Used for adding urls
+     * @param url the path to the file.
+     * */
+    public CompactFileIO(String url) {
+        file = new File(url);
+        fetch();
+    }
+
+    /**Get data from the file and store it in the byte arena.
+     * */
+    public void fetch() {
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            long length = channel.size();
+            if (length >= Integer.MAX_VALUE - 1)
+                throw new IllegalStateException("File is too large for CompactFileIO, use MappedFileIO.");
+
+            //one extra byte in case the last line has no line break
+            byte[] bytes = new byte[(int) length + 1];
+            ByteBuffer buffer = ByteBuffer.wrap(bytes, 0, (int) length);
+            while (buffer.hasRemaining()) {
+                if (channel.read(buffer) < 0) break;
+            }
+            index(bytes, buffer.position());
+        } catch (IOException e) {
+            if (e instanceof NoSuchFileException) {
+                System.out.println("File not found.");
+            }
+            System.out.println(e.getMessage());
+        }
+    }
+
+    /**Saves the lines appended since the last fetch or commit into the file.
+     * */
+    public boolean commit() {
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.CREATE,
+                StandardOpenOption.WRITE, StandardOpenOption.APPEND)) {
+            ByteBuffer buffer = ByteBuffer.wrap(arena, syncedBytes, used - syncedBytes);
+            while (buffer.hasRemaining()) channel.write(buffer);
+            channel.force(false);
+            syncedBytes = used;
+            return true;
+        } catch (IOException e) {
+            System.out.println(e.getMessage());
+            return false;
+        }
+    }
+
+    /**Append a String into current state (Remember to commit to save the data)
+     * */
+    public void append(String str) {
+        byte[] bytes = str.getBytes(StandardCharsets.UTF_8);
+        ensureArena(used + bytes.length + 1);
+        System.arraycopy(bytes, 0, arena, used, bytes.length);
+        used += bytes.length;
+        arena[used++] = '\n';
+        addOffset(used);
+    }
+
+    /**Return the line at the given position, decoded on each call.
+     * */
+    @Override
+    public String get(int index) {
+        Objects.checkIndex(index, size);
+        return new String(arena, offsets[index], offsets[index + 1] - offsets[index], StandardCharsets.UTF_8);
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    /**Return how many bytes the stored lines take up.
+     * */
+    public int byteSize() {
+        return used;
+    }
+
+    /**Find the data in the file including the inputted string, ignoring case.
+     * ASCII lines are matched on their bytes, only matches become Strings.
+     *
+     * @param value subString to be included
+     * @return an ArrayList of String containing the data included
+     * */
+    public ArrayList<String> findInclude(String value) {
+        ArrayList<String> result = new ArrayList<>();
+        String needle = value.toLowerCase();
+        byte[] asciiNeedle = LineBytes.asciiNeedle(needle);
+        ByteBuffer buffer = ByteBuffer.wrap(arena);
+        for (int i = 0; i < size; i++) {
+            int start = offsets[i];
+            int end = offsets[i + 1];
+            if (LineBytes.isAscii(buffer, start, end)) {
+                if (asciiNeedle != null && LineBytes.indexOfIgnoreCase(buffer, start, end, asciiNeedle) >= 0)
+                    result.add(get(i));
+            } else if (get(i).toLowerCase().contains(needle)) {
+                result.add(get(i));
+            }
+        }
+        return result;
+    }
+
+    //takes over the file bytes, dropping the '\r' of "\r\n" endings while finding the lines
+    private void index(byte[] bytes, int length) {
+        arena = bytes;
+        offsets = new int[Math.max(16, length / 32)];
+        size = 0;
+        int write = 0;
+        for (int read = 0; read < length; read++) {
+            byte b = bytes[read];
+            if (b == '\n' && write > offsets[size] && bytes[write - 1] == '\r') write--;
+            bytes[write++] = b;
+            if (b == '\n') addOffset(write);
+        }
+        used = write;
+        syncedBytes = write;
+        if (write > offsets[size]) {
+            //the file has no line break yet after its last line, commit adds it
+            bytes[used++] = '\n';
+            addOffset(used);
+        }
+    }
+
+    private void addOffset(int end) {
+        if (size + 2 > offsets.length) offsets = Arrays.copyOf(offsets, offsets.length * 2);
+        offsets[++size] = end;
+    }
+
+    private void ensureArena(int capacity) {
+        if (capacity <= arena.length) return;
+        arena = Arrays.copyOf(arena, Math.max(capacity, arena.length + (arena.length >> 1) + 16));
+    }
+}
@@ -0,0 +1,272 @@
+package utils;
+
+import java.io.*;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+/**A FileIO that can be shared between threads.
+ * <p>Reads never lock, they work on an immutable snapshot of the state.
+ * Every change is handed to a single background writer which applies
+ * queued changes in batches, writes each batch to the file once (group
+ * commit) and only then publishes the new snapshot. The returned futures
+ * complete once the change is in the file.
+ * @author hatohui
+ * */
+public class ConcurrentFileIO implements AutoCloseable {
+    private static final int MAX_BATCH = 4096;
+    private final Path path;
+    private final Charset charset;
+    private final LinkedBlockingQueue<Mutation> queue = new LinkedBlockingQueue<>();
+    private final Thread writer;
+    private volatile Snapshot snapshot;
+    private volatile boolean closed;
+
+    /**Constructor for ConcurrentFileIO, loads the file
+     * and starts the writer thread.
+     * @param url the path to the file.
+     * */
+    public ConcurrentFileIO(String url) {
+        this(url, Charset.defaultCharset());
+    }
+
+    /**Constructor for ConcurrentFileIO reading and writing the file in
+     * the given charset, loads the file and starts the writer thread.
+     * @param url the path to the file.
+     * @param charset the charset of the file.
+     * */
+    public ConcurrentFileIO(String url, Charset charset) {
+        path = Path.of(url);
+        this.charset = Objects.requireNonNull(charset, "charset");
+        snapshot = load();
+        writer = new Thread(this::writeLoop, "FileIO-writer-" + path.getFileName());
+        writer.setDaemon(true);
+        writer.start();
+    }
+
+    /**Return the current state of data in the File. The list is an
+     * immutable snapshot, later changes never show up in it.
+     * @return a List<String> containing the current data in the file.
+     * */
+    public List<String> getState() {
+        Snapshot current = snapshot;
+        if (current.isEmpty())
+            throw new IllegalStateException("there's no data in current state.");
+        return current;
+    }
+
+    /**Find the data in the file including the inputted string
+     *
+     * @param value subString to be included
+     * @return an ArrayList of String containing the data included
+     * */
+    public ArrayList<String> findInclude(String value) {
+        ArrayList<String> result = new ArrayList<>();
+        String needle = value.toLowerCase();
+        for (String str : snapshot) {
+            if (str.toLowerCase().contains(needle)) {
+                result.add(str);
+            }
+        }
+        return result;
+    }
+
+    /**Return the number of lines in the current snapshot.
+     * */
+    public int size() {
+        return snapshot.size();
+    }
+
+    /**Queue a String to be appended to the file.
+     * @return a future completing once the line is in the file.
+     * */
+    public CompletableFuture<Void> append(String str) {
+        Mutation mutation = new Mutation(Mutation.APPEND, str + "\n");
+        submit(mutation);
+        return mutation.done.thenApply(result -> null);
+    }
+
+    /**Queue the removal of the first line equal to the value
+     * (ignoring case and surrounding spaces).
+     * @return a future completing with whether a line was removed.
+     * */
+    public CompletableFuture<Boolean> removeFirstInState(String value) {
+        Mutation mutation = new Mutation(Mutation.REMOVE, value.strip());
+        submit(mutation);
+        return mutation.done;
+    }
+
+    /**Queue a reload of the file, dropping the current snapshot.
+     * @return a future completing once the new snapshot is published.
+     * */
+    public CompletableFuture<Void> fetch() {
+        Mutation mutation = new Mutation(Mutation.FETCH, null);
+        submit(mutation);
+        return mutation.done.thenApply(result -> null);
+    }
+
+    /**Write out every queued change then stop the writer thread.
+     * */
+    @Override
+    public void close() {
+        closed = true;
+        try {
+            writer.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        //anything that slipped in while closing is never written
+        for (Mutation mutation = queue.poll(); mutation != null; mutation = queue.poll()) {
+            mutation.done.completeExceptionally(new IllegalStateException("FileIO is already closed."));
+        }
+    }
+
+    private void submit(Mutation mutation) {
+        if (closed)
+            throw new IllegalStateException("FileIO is already closed.");
+        queue.add(mutation);
+    }
+
+    private void writeLoop() {
+        ArrayList<Mutation> batch = new ArrayList<>();
+        while (!closed || !queue.isEmpty()) {
+            try {
+                Mutation first = queue.poll(50, TimeUnit.MILLISECONDS);
+                if (first == null) continue;
+                batch.add(first);
+                queue.drainTo(batch, MAX_BATCH - 1);
+                apply(batch);
+            } catch (InterruptedException e) {
+                //keep draining, close() decides when to stop
+            } finally {
+                batch.clear();
+            }
+        }
+    }
+
+    //applies a batch to a working copy, persists it, then publishes it
+    private void apply(List<Mutation> batch) {
+        Snapshot current = snapshot;
+        String[] lines = current.lines;
+        int size = current.size;
+        int appendFrom = size;
+        boolean rewrite = false;
+        boolean[] results = new boolean[batch.size()];
+
+        for (int i = 0; i < batch.size(); i++) {
+            Mutation mutation = batch.get(i);
+            if (mutation.type == Mutation.FETCH && i > 0) {
+                //persist what came before the reload first
+                apply(batch.subList(0, i));
+                apply(batch.subList(i, batch.size()));
+                return;
+            } else if (mutation.type == Mutation.FETCH) {
+                Snapshot loaded = load();
+                lines = loaded.lines;
+                size = loaded.size;
+                appendFrom = size;
+                results[i] = true;
+            } else if (mutation.type == Mutation.APPEND) {
+                //slots past the published size are never read, so they can be reused
+                if (size == lines.length) lines = Arrays.copyOf(lines, Math.max(16, size * 2));
+                lines[size++] = mutation.value;
+                results[i] = true;
+            } else {
+                int found = -1;
+                for (int j = 0; j < size && found < 0; j++) {
+                    if (lines[j].strip().equalsIgnoreCase(mutation.value)) found = j;
+                }
+                if (found >= 0) {
+                    String[] copy = new String[lines.length];
+                    System.arraycopy(lines, 0, copy, 0, found);
+                    System.arraycopy(lines, found + 1, copy, found, size - found - 1);
+                    lines = copy;
+                    size--;
+                    rewrite = true;
+                    results[i] = true;
+                }
+            }
+        }
+
+        Snapshot next = new Snapshot(lines, size);
+        try {
+            if (rewrite) {
+                FileIO.replaceLines(path, next, charset);
+            } else if (appendFrom < size) {
+                FileIO.appendLines(path, next.subList(appendFrom, size), charset);
+            }
+        } catch (IOException e) {
+            for (Mutation mutation : batch) mutation.done.completeExceptionally(e);
+            return;
+        }
+
+        snapshot = next;
+        for (int i = 0; i < batch.size(); i++) batch.get(i).done.complete(results[i]);
+    }
+
+    private Snapshot load() {
+        ArrayList<String> lines = new ArrayList<>();
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            if (ParallelLineLoader.supports(charset)) {
+                LineBytes.readLines(channel, charset, lines);
+            } else {
+                BufferedReader reader = new BufferedReader(Channels.newReader(channel, charset));
+                String line = reader.readLine();
+                while (line != null) {
+                    lines.add(line + "\n");
+                    line = reader.readLine();
+                }
+            }
+        } catch (IOException e) {
+            if (e instanceof NoSuchFileException) {
+                System.out.println("File not found.");
+            }
+            System.out.println(e.getMessage());
+        }
+        return new Snapshot(lines.toArray(new String[0]), lines.size());
+    }
+
+    /**An immutable view over the first size entries of the array.
+     * */
+    private static final class Snapshot extends AbstractList<String> implements RandomAccess {
+        private final String[] lines;
+        private final int size;
+
+        private Snapshot(String[] lines, int size) {
+            this.lines = lines;
+            this.size = size;
+        }
+
+        @Override
+        public String get(int index) {
+            Objects.checkIndex(index, size);
+            return lines[index];
+        }
+
+        @Override
+        public int size() {
+            return size;
+        }
+    }
+
+    private static final class Mutation {
+        private static final int APPEND = 0;
+        private static final int REMOVE = 1;
+        private static final int FETCH = 2;
+        private final int type;
+        private final String value;
+        private final CompletableFuture<Boolean> done = new CompletableFuture<>();
+
+        private Mutation(int type, String value) {
+            this.type = type;
+            this.value = value;
+        }
+    }
+}
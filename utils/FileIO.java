@@ -1,15 +1,88 @@
 package utils;
 
 import java.io.*;
-import java.util.ArrayList;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.AsynchronousFileChannel;
+import java.nio.channels.Channels;
+import java.nio.channels.CompletionHandler;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.*;
+import java.nio.file.*;
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.function.Consumer;
+import java.util.function.Predicate;
+import java.util.function.Supplier;
+import java.util.function.UnaryOperator;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.zip.CRC32;
+import java.util.zip.CheckedOutputStream;
 
-public class FileIO extends ArrayList<String> {
-    private static File file;
+public class FileIO extends ArrayList<String> implements AutoCloseable {
+    private static final int ASYNC_CHUNK = 64 * 1024;
+    //states with at least this many lines are searched in parallel
+    private static final int PARALLEL_SEARCH = 64 * 1024;
+    private final File file;
+    //lines [0, syncedSize) are known to be in the file
+    private int syncedSize;
+    //equals modCount as long as only append() touched the state since the last sync
+    private int appendModCount;
+    //optional substring index over the case-folded lines
+    private transient TrigramIndex index;
+    private transient ArrayList<String> folded;
+    private int indexModCount;
+    //normalized line -> positions, removed lines stay as null until compacted
+    private transient HashMap<String, Positions> keys;
+    private int keysModCount;
+    private int tombstones;
+    //positions of the removed slots in increasing order, [0, tombstones) being used
+    private transient int[] removedSlots = new int[8];
+    //optional normalized line -> lines in file order, kept sorted
+    private transient TreeMap<String, ArrayDeque<String>> sorted;
+    private int sortedModCount;
+    //optional log of the changes made since the last commit
+    private transient WriteAheadLog wal;
+    //changes of a running transaction(), logged only if its commit fails; type char then value
+    private transient ArrayList<String> batch;
+    //how far the file has been read, and the bytes right before that point
+    private long readOffset;
+    private byte[] tailCheck = new byte[0];
+    private transient FileWatcher watcher;
+    //set by the watching thread when the file changed, taken in on the owning thread's next call
+    private transient volatile boolean watchedChange;
+    //how far the watching thread followed the file, whether this FileIO writes it and the listener; guarded by file
+    private transient FileEnd followed;
+    private transient int ownWrites;
+    private transient long handedOver;
+    private transient boolean missedChange;
+    private transient Consumer<List<String>> onChange;
+    //binary snapshot written on commit, and an index it brought in for useIndex()
+    private boolean snapshot;
+    private transient TrigramIndex snapshotIndex;
+    private int snapshotModCount;
+    //block compression of the file, null for plain text; both written by name when serialized
+    private transient BlockCodec codec;
+    private transient Charset charset;
+    //a commitAsync() write that finished, applied by the next call from the owning thread
+    private transient volatile AsyncCommit asyncCommit;
+    //the commitAsync() writes chained one after the other, completing with how many lines the file holds
+    private transient CompletableFuture<Integer> asyncWrites;
+    //bumped every time the state is synced, so an async commit isn't applied over a newer sync
+    private int syncs;
+    //bumped by the changes made in place, which leave modCount as it is
+    private transient int edits;
 
     /**Return an array containing the current state of data in the File.
      * @return an ArrayList<String> containing the current data in the file.
      * */
     public ArrayList<String> getState() {
+        applyWatched();
+        compact();
         if (this.isEmpty())
             throw new IllegalStateException("there's no data in current state.");
         return this;
@@ -20,24 +93,118 @@ public class FileIO extends ArrayList<String> {
      * @param url the path to the file.
      * */
     public FileIO(String url) {
+        this(url, Charset.defaultCharset(), null);
+    }
+
+    /**Constructor for FileIO reading and writing the file in the given charset.
+     * @param url the path to the file.
+     * @param charset the charset of the file, the platform default otherwise.
+     * */
+    public FileIO(String url, Charset charset) {
+        this(url, charset, null);
+    }
+
+    /**Constructor for FileIO reading and writing a file compressed in
+     * blocks with the given codec, see useCodec().
+     * @param url the path to the file.
+     * @param codec the codec the file is compressed with, null for plain text.
+     * @throws IllegalArgumentException when the charset can't be used with a codec, see useCodec().
+     * */
+    public FileIO(String url, BlockCodec codec) {
+        this(url, Charset.defaultCharset(), codec);
+    }
+
+    /**Constructor for FileIO reading and writing a file in the given
+     * charset, compressed in blocks with the given codec.
+     * @param url the path to the file.
+     * @param charset the charset of the file, the platform default otherwise.
+     * @param codec the codec the file is compressed with, null for plain text.
+     * @throws IllegalArgumentException when the charset can't be used with a codec, see useCodec().
+     * */
+    public FileIO(String url, Charset charset, BlockCodec codec) {
         file = new File(url);
-        fetch();
+        this.charset = Objects.requireNonNull(charset, "charset");
+        checkCodec(codec, charset);
+        this.codec = codec;
+        //an empty log holds nothing to replay
+        if (walPath().toFile().length() > 0) recover();
+        else load();
     }
 
     /**Get data from the file and store in itself (ArrayList<String>)
+     * <p>Changes not yet committed are dropped, including the ones in the
+     * write-ahead log.
      * */
     public void fetch() {
+        load();
+        resetWal();
+    }
+
+    /**Same as fetch() but the file is split into chunks at line breaks
+     * which are decoded in parallel on the common ForkJoinPool.
+     * */
+    public void fetchParallel() {
+        fetchParallel(ForkJoinPool.commonPool());
+    }
+
+    /**Same as fetch() but the file is split into chunks at line breaks
+     * which are decoded in parallel on the given pool, then joined in
+     * file order. Falls back to fetch() for charsets where a line break
+     * byte can be part of another character.
+     * @param pool the pool running the decoding tasks.
+     * */
+    public void fetchParallel(ForkJoinPool pool) {
+        awaitAsyncCommits();
+        if (codec == null && !ParallelLineLoader.supports(charset)) {
+            fetch();
+            return;
+        }
         try {
-            this.clear();
-            BufferedReader reader = new BufferedReader(new FileReader(file));
-            String line = reader.readLine();
-            while (line != null) {
-                this.add(line + "\n");
-                line = reader.readLine();
+            loadChunks(codec != null
+                    ? BlockFile.readAll(file.toPath(), codec, charset, pool)
+                    : ParallelLineLoader.load(file.toPath(), charset, pool));
+            resetWal();
+        } catch (IOException e) {
+            if (e instanceof NoSuchFileException) {
+                System.out.println("File not found.");
             }
-            reader.close();
+            System.out.println(e.getMessage());
+        }
+    }
+
+    private void load() {
+        awaitAsyncCommits();
+        if (loadSnapshot()) return;
+        //a file that can't be read leaves the state empty, as the log is reset along with it
+        this.clear();
+        if (codec != null) {
+            try {
+                loadChunks(BlockFile.readAll(file.toPath(), codec, charset, ForkJoinPool.commonPool()));
+            } catch (IOException e) {
+                if (e instanceof NoSuchFileException) {
+                    System.out.println("File not found.");
+                }
+                System.out.println(e.getMessage());
+            }
+            return;
+        }
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            if (ParallelLineLoader.supports(charset)) {
+                //'\n' can't be part of another character, so lines are cut on the raw bytes
+                LineBytes.readLines(channel, charset, this);
+            } else {
+                BufferedReader reader = new BufferedReader(Channels.newReader(channel, charset));
+                String line = reader.readLine();
+                while (line != null) {
+                    this.add(line + "\n");
+                    line = reader.readLine();
+                }
+            }
+            loaded();
+            //the reader stopped at the end of the file, so the channel is right there
+            trackOffset(channel.position());
         } catch (IOException e) {
-            if (e instanceof FileNotFoundException) {
+            if (e instanceof NoSuchFileException) {
                 System.out.println("File not found.");
             }
             System.out.println(e.getMessage());
@@ -45,59 +212,1657 @@ public class FileIO extends ArrayList<String> {
     }
 
     /**Saves the data from the current state into the file.
+     * <p>If only append() was used since the last fetch or commit, the new
+     * lines are appended to the end of the file, after a line break when the
+     * file doesn't end with one. Any other change rewrites a
+     * temporary file which then atomically replaces the original, so the file
+     * is never left half written.
      * */
     public boolean commit() {
+        awaitAsyncCommits();
         try {
-            OutputStreamWriter writer = new OutputStreamWriter(new FileOutputStream(file));
-            for (String str : this) {
-                writer.append(str);
+            //what other processes appended is taken in first, so the new end doesn't skip it
+            if (watcher != null) {
+                watchedChange = false;
+                refresh();
+            }
+            compact();
+            boolean appendOnly = modCount == appendModCount && file.exists();
+            long start = beginWrite();
+            long end = -1;
+            try {
+                end = write(appendOnly, start);
+            } finally {
+                endWrite(end, !appendOnly);
             }
-            writer.close();
+            if (wal != null) wal.reset();
+            //a commit inside a transaction's body makes the changes so far durable
+            if (batch != null) batch.clear();
+            markSynced();
+            trackOffset(end);
+            if (snapshot) writeSnapshot();
             return true;
         } catch (IOException e) {
             if (e instanceof FileNotFoundException) {
                 System.out.println("File not found.");
             }
+            abortWalCommit();
             return false;
         }
     }
 
+    //appends the lines added since the last sync to the file of the given length, or rewrites it; returns where the write ended
+    private long write(boolean appendOnly, long length) throws IOException {
+        Path path = file.toPath();
+        if (appendOnly) {
+            if (syncedSize == size()) return catchUp(path, length);
+            byte[] bytes = codec != null
+                    ? BlockFile.encode(subList(syncedSize, size()), codec, charset)
+                    : encode(appended(length), charset, length);
+            if (wal != null) wal.logCommit(WriteAheadLog.COMMIT_APPEND, length, length + bytes.length);
+            appendBytes(path, bytes);
+            if (watcher == null || codec != null) return length + bytes.length;
+            //another process may have appended before the bytes landed, its lines go before the new ones
+            long at = FileTail.indexOf(path, length, bytes);
+            if (at < 0) return file.length();
+            return catchUp(path, at) + bytes.length;
+        }
+        CRC32 crc = new CRC32();
+        Path temp = writeTemp(path, this, crc, codec, charset);
+        try {
+            long size = Files.size(temp);
+            if (wal != null) wal.logCommit(WriteAheadLog.COMMIT_REWRITE, size, crc.getValue());
+            moveInto(temp, path);
+            return size;
+        } finally {
+            Files.deleteIfExists(temp);
+        }
+    }
+
+    //takes in the lines other processes appended while watched up to at, beginWrite() handed over
+    //the ones it read so only those after them are reported
+    private long catchUp(Path path, long at) throws IOException {
+        if (watcher == null || codec != null || at <= readOffset) return at;
+        long reported = Math.max(readOffset, Math.min(handedOver, at));
+        ArrayList<String> others = new ArrayList<>();
+        FileTail.readLines(path, readOffset, reported, charset, others);
+        ArrayList<String> late = new ArrayList<>();
+        FileTail.readLines(path, reported, at, charset, late);
+        others.addAll(late);
+        addAll(syncedSize, others);
+        notifyWatch(late);
+        return at;
+    }
+
+    /**Load the file in the background, see fetchAsync(Consumer).
+     * @return a future completing with this FileIO once loaded.
+     * */
+    public CompletableFuture<FileIO> fetchAsync() {
+        return fetchAsync(chunk -> { });
+    }
+
+    /**Load the file in the background without blocking the caller.
+     * <p>The file is read in chunks through an AsynchronousFileChannel and
+     * every chunk of decoded lines is handed to onChunk as soon as it is
+     * ready, so a partial state can be shown while loading continues. The
+     * state of this FileIO is replaced once the whole file is read, on the
+     * thread completing the future; don't use the FileIO from other threads
+     * until then. Cancelling the future stops the loading and leaves the
+     * state untouched. A compressed file is decoded in parallel on the
+     * common ForkJoinPool instead, each block being handed to onChunk.
+     * @param onChunk receives each chunk of lines, in file order.
+     * @return a future completing with this FileIO once loaded.
+     * */
+    public CompletableFuture<FileIO> fetchAsync(Consumer<List<String>> onChunk) {
+        Loading result = new Loading();
+        if (codec != null) {
+            Path path = file.toPath();
+            BlockCodec blocks = codec;
+            Charset blockCharset = charset;
+            ForkJoinPool.commonPool().execute(() -> {
+                try {
+                    List<List<String>> chunks = BlockFile.readAll(path, blocks, blockCharset, ForkJoinPool.commonPool());
+                    for (List<String> chunk : chunks) {
+                        if (result.isDone()) return;
+                        onChunk.accept(Collections.unmodifiableList(chunk));
+                    }
+                    finishFetch(result, () -> loadChunks(chunks));
+                } catch (IOException | RuntimeException e) {
+                    result.completeExceptionally(e);
+                }
+            });
+            return result;
+        }
+        //the file is read once the commitAsync() writes still running are done
+        CompletableFuture<Integer> writes = asyncWrites != null
+                ? asyncWrites : CompletableFuture.completedFuture(syncedSize);
+        Charset lineCharset = charset;
+        writes.thenRun(() -> {
+            if (result.isDone()) return;
+            CompletableFuture<AsyncLineLoader> loading = AsyncLineLoader.load(file.toPath(), lineCharset, onChunk);
+            //cancelling the result stops the loading too
+            result.whenComplete((value, error) -> loading.cancel(false));
+            loading.whenComplete((loader, error) -> {
+                if (error != null) {
+                    result.completeExceptionally(error);
+                    return;
+                }
+                finishFetch(result, () -> {
+                    clear();
+                    addAll(loader.lines());
+                    loaded();
+                    trackOffset(loader.length());
+                });
+            });
+        });
+        return result;
+    }
+
+    //swaps in the loaded state, unless the result was cancelled meanwhile
+    private void finishFetch(Loading result, Runnable replace) {
+        synchronized (result) {
+            if (result.isDone()) return;
+            replace.run();
+            resetWal();
+            result.complete(this);
+        }
+    }
+
+    /**Save the current state into the file in the background, the same
+     * way commit() does. The state is captured when this is called, later
+     * changes are left for the next commit. With a write-ahead log in use
+     * the commit runs synchronously, since the log has to be reset in step
+     * with the state; so does a commit of a compressed file, or of a file
+     * being watched, whose state takes in what other processes appended.
+     * <p>Calls that overlap are chained: each write starts once the one
+     * before it finished, and appends carry on from what it wrote, so no
+     * older write can land on top of a newer one. commit(), fetch(),
+     * writeTo() and close() wait for the writes still running.
+     * <p>The write only touches the file. The FileIO learns that its state
+     * was synced on the next commit, commitAsync(), writeTo() or refresh of
+     * the watched file, on the thread making that call.
+     * @return a future completing with true once the file is written.
+     * */
+    public CompletableFuture<Boolean> commitAsync() {
+        if (wal != null || codec != null || watcher != null) return CompletableFuture.completedFuture(commit());
+
+        //checked first, so a chain done by now has its outcome applied right below
+        boolean writing = asyncWrites != null && !asyncWrites.isDone();
+        finishAsyncCommit();
+        compact();
+        int capturedSize = size();
+        int capturedModCount = modCount;
+        int capturedEdits = edits;
+        int capturedSyncs = syncs;
+        Path path = file.toPath();
+        Charset target = charset;
+        //only appends since the last sync, so every write still running holds a prefix of the state
+        boolean appendOnly = modCount == appendModCount && file.exists();
+        int base = appendOnly ? syncedSize : 0;
+        List<String> lines = new ArrayList<>(subList(base, size()));
+        CompletableFuture<Integer> previous = writing ? asyncWrites : CompletableFuture.completedFuture(syncedSize);
+
+        CompletableFuture<Boolean> result = new CompletableFuture<>();
+        asyncWrites = previous.thenCompose(onDisk -> {
+            long start = beginWrite();
+            CompletableFuture<Long> write;
+            try {
+                write = appendOnly
+                        ? appendAsync(path, start, lines.subList(onDisk - base, lines.size()), target)
+                        : rewriteAsync(path, lines, target);
+            } catch (RuntimeException e) {
+                write = CompletableFuture.failedFuture(e);
+            }
+            return write.handle((end, error) -> {
+                endWrite(error == null ? end : -1, !appendOnly);
+                result.complete(error == null);
+                //a failed write leaves the file as the writes before it left it
+                if (error != null) return onDisk;
+                asyncCommit = new AsyncCommit(capturedSize, capturedModCount, capturedEdits, capturedSyncs,
+                        end, FileTail.read(path, end));
+                return capturedSize;
+            });
+        });
+        return result;
+    }
+
+    //appends the lines at the given length of the file, the writes before being done; completes with the new end
+    private static CompletableFuture<Long> appendAsync(Path path, long length, List<String> lines, Charset charset) {
+        if (lines.isEmpty()) return CompletableFuture.completedFuture(length);
+        List<String> separated = separated(path, length, lines, charset);
+        return CompletableFuture.supplyAsync(() -> encode(separated, charset, length))
+                .thenCompose(bytes -> writeAsync(path, ByteBuffer.wrap(bytes), length, StandardOpenOption.WRITE)
+                        .thenApply(value -> length + bytes.length));
+    }
+
+    private static CompletableFuture<Long> rewriteAsync(Path path, List<String> lines, Charset charset) {
+        return CompletableFuture.supplyAsync(() -> encode(lines, charset, 0))
+                .thenCompose(bytes -> {
+                    try {
+                        Path temp = createTemp(path);
+                        return writeAsync(temp, ByteBuffer.wrap(bytes), 0, StandardOpenOption.WRITE)
+                                .thenApply(value -> {
+                                    try {
+                                        moveInto(temp, path);
+                                    } catch (IOException e) {
+                                        throw new UncheckedIOException(e);
+                                    }
+                                    return (long) bytes.length;
+                                })
+                                .whenComplete((value, error) -> deleteQuietly(temp));
+                    } catch (IOException e) {
+                        return CompletableFuture.failedFuture(e);
+                    }
+                });
+    }
+
+    //waits for the commitAsync() writes still running, then applies their outcome
+    private void awaitAsyncCommits() {
+        if (asyncWrites != null) {
+            asyncWrites.join();
+            asyncWrites = null;
+        }
+        finishAsyncCommit();
+    }
+
+    //applies the outcome of the last commitAsync() write, on the caller's thread
+    private void finishAsyncCommit() {
+        AsyncCommit done = asyncCommit;
+        if (done == null) return;
+        asyncCommit = null;
+        //the state was reloaded or committed again since, that sync is newer
+        if (done.syncs != syncs) return;
+        readOffset = done.length;
+        tailCheck = done.tail;
+        syncedSize = done.size;
+        //lines appended meanwhile are left for the next commit, any other change still rewrites the file
+        if (modCount == done.modCount && edits == done.edits) appendModCount = modCount;
+    }
+
+    /**Compress the file in independent blocks with the given codec from
+     * the next commit on, which rewrites the whole file. Appends then add
+     * new blocks at the end, and fetchParallel() decodes blocks in parallel.
+     * Open an already compressed file with FileIO(String, BlockCodec).
+     * Blocks are cut into lines on the raw bytes, so the charset has to be
+     * UTF-8 or a single byte one writing "\n" as the 0x0A byte.
+     * @param codec e.g. BlockCodec.GZIP, or null to go back to plain text.
+     * @throws IllegalArgumentException when the charset isn't one of those.
+     * */
+    public FileIO useCodec(BlockCodec codec) {
+        checkCodec(codec, charset);
+        if (this.codec != codec) {
+            this.codec = codec;
+            appendModCount = modCount - 1;
+        }
+        return this;
+    }
+
+    /**Read and write the file in the given charset from now on. The
+     * state already loaded is kept, so the next commit() rewrites the whole
+     * file in the new charset; call fetch() instead to read the file again
+     * in it.
+     * @throws IllegalArgumentException when a codec is in use and the
+     * charset can't be used with it, see useCodec().
+     * */
+    public FileIO useCharset(Charset charset) {
+        checkCodec(codec, Objects.requireNonNull(charset, "charset"));
+        if (!this.charset.equals(charset)) {
+            this.charset = charset;
+            appendModCount = modCount - 1;
+        }
+        return this;
+    }
+
+    //blocks are cut into lines on the raw bytes, which needs '\n' to be a byte of its own
+    private static void checkCodec(BlockCodec codec, Charset charset) {
+        if (codec != null && !ParallelLineLoader.supports(charset))
+            throw new IllegalArgumentException("A block compressed file can't be in " + charset
+                    + ", use UTF-8 or an ASCII based single byte charset.");
+    }
+
+    /**Write a binary snapshot of the state next to the file (the same
+     * path ending in .snap) on every commit(), including the trigram index
+     * when useIndex() is on. Loading the file then reads the snapshot in
+     * one mapped read and skips decoding the text, as long as the file's
+     * modification time, length and the snapshot's checksum still match.
+     * */
+    public FileIO useSnapshot() {
+        snapshot = true;
+        return this;
+    }
+
+    /**Log every append() and removeFirstInState() into a write-ahead log
+     * next to the file (the same path ending in .wal) until they are
+     * committed. Opening a FileIO replays whatever the log still holds, so
+     * a crash between changes and commit() loses nothing.
+     * @param syncEvery how many changes may be logged before the log is
+     *                  forced to disk, 1 forces every change.
+     * */
+    public FileIO useWal(int syncEvery) {
+        try {
+            if (wal == null) wal = new WriteAheadLog(walPath(), syncEvery);
+            else wal.setSyncEvery(syncEvery);
+        } catch (IOException e) {
+            System.out.println(e.getMessage());
+        }
+        return this;
+    }
+
+    /**Follow the file while other processes write to it. A background
+     * thread waits for changes through a WatchService, only reads the
+     * bytes appended since it last read and hands the new lines to
+     * onChange; every line is handed over when the file was truncated or
+     * rewritten. What this FileIO writes itself is never handed over.
+     * <p>The watching thread never touches the state. The next
+     * getState(), iteration, search, append, removal or commit takes the
+     * appended lines in, on the thread making that call; the whole file is
+     * reloaded (and changes not committed dropped) only when it was
+     * truncated or rewritten.
+     * @param onChange receives the new lines on the watching thread.
+     * @throws IllegalStateException when already watching.
+     * */
+    public FileIO watch(Consumer<List<String>> onChange) {
+        if (watcher != null)
+            throw new IllegalStateException("FileIO is already watching its file.");
+        synchronized (file) {
+            followed = new FileEnd(readOffset, tailCheck);
+            this.onChange = onChange;
+        }
+        try {
+            watcher = new FileWatcher(file.toPath(), this::follow);
+        } catch (IOException e) {
+            System.out.println(e.getMessage());
+            synchronized (file) {
+                followed = null;
+            }
+        }
+        return this;
+    }
+
+    /**Stop following the file, see watch().
+     * */
+    public void unwatch() {
+        if (watcher == null) return;
+        closeQuietly(watcher);
+        watcher = null;
+        synchronized (file) {
+            followed = null;
+            onChange = null;
+        }
+    }
+
+    /**Close the write-ahead log if one is open. Changes not committed
+     * stay in the log and are replayed on the next open, a log with
+     * nothing left in it is deleted.
+     * */
+    @Override
+    public void close() {
+        awaitAsyncCommits();
+        unwatch();
+        if (wal == null) return;
+        try {
+            wal.sync();
+            boolean empty = wal.isEmpty();
+            wal.close();
+            if (empty) Files.deleteIfExists(walPath());
+        } catch (IOException e) {
+            System.out.println(e.getMessage());
+        }
+        wal = null;
+    }
+
+    /**Replace the line at the given position, marking the state
+     * so that the next commit rewrites the file.
+     * */
+    @Override
+    public String set(int index, String element) {
+        compact();
+        String previous = super.set(index, element);
+        edits++;
+        appendModCount = modCount - 1;
+        indexModCount = modCount - 1;
+        keysModCount = modCount - 1;
+        sortedModCount = modCount - 1;
+        return previous;
+    }
+
+    /**Keep a trigram index and a lowercase copy of the state so that
+     * findInclude only checks the lines that can contain the value.
+     * The index costs memory roughly the size of the data, it is kept up
+     * to date by fetch(), append() and rebuilt after any other change.
+     * */
+    public FileIO useIndex() {
+        if (index != null) return this;
+        folded = new ArrayList<>();
+        if (snapshotIndex != null && snapshotModCount == modCount) {
+            //the snapshot already holds the postings, only the lowercase copy is missing
+            index = snapshotIndex;
+            for (String str : this) folded.add(str.toLowerCase());
+            indexModCount = modCount;
+        } else {
+            index = new TrigramIndex();
+            rebuildIndex();
+        }
+        snapshotIndex = null;
+        return this;
+    }
+
+    /**Keep the lines sorted by their normalized value (ignoring case and
+     * surrounding whitespace) so that findPrefix(), range() and
+     * sortedIterator() don't have to scan and sort the whole state.
+     * It is kept up to date by append() and the remove methods, and
+     * rebuilt after any other change.
+     * */
+    public FileIO useSortedIndex() {
+        if (sorted == null) rebuildSorted();
+        return this;
+    }
+
+    /**Find the data in the file starting with the inputted string,
+     * ignoring case and leading whitespace, in sorted order.
+     *
+     * @param prefix start of the data
+     * @return an ArrayList of String containing the data found
+     * */
+    public ArrayList<String> findPrefix(String prefix) {
+        String key = fold(prefix.stripLeading());
+        ArrayList<String> result = new ArrayList<>();
+        for (Map.Entry<String, ArrayDeque<String>> entry : sortedIndex().tailMap(key, true).entrySet()) {
+            if (!entry.getKey().startsWith(key)) break;
+            result.addAll(entry.getValue());
+        }
+        return result;
+    }
+
+    /**Find the data in the file from one value (included) up to another
+     * (excluded), compared ignoring case and surrounding whitespace, in
+     * sorted order.
+     *
+     * @return an ArrayList of String containing the data found
+     * @throws IllegalArgumentException when from comes after to.
+     * */
+    public ArrayList<String> range(String from, String to) {
+        String low = fold(from.strip());
+        String high = fold(to.strip());
+        if (low.compareTo(high) > 0)
+            throw new IllegalArgumentException("range start \"" + from + "\" is after its end \"" + to + "\"");
+        ArrayList<String> result = new ArrayList<>();
+        for (ArrayDeque<String> lines : sortedIndex().subMap(low, true, high, false).values()) {
+            result.addAll(lines);
+        }
+        return result;
+    }
+
+    /**Iterate over the data sorted by normalized value, lines with the
+     * same value keeping their order in the file.
+     * */
+    public Iterator<String> sortedIterator() {
+        return sortedIndex().values().stream().flatMap(Collection::stream).iterator();
+    }
+
     /**Find the data in the file including the inputted string
      *
      * @param value subString to be included
      * @return an ArrayList of String containing the data included
      * */
     public ArrayList<String> findInclude(String value) {
+        applyWatched();
         ArrayList<String> result = new ArrayList<>();
-        for (String str: this) {
-            if (str.toLowerCase().contains(value.toLowerCase())) {
-                result.add(str);
+        String needle = value.toLowerCase();
+        if (index == null) {
+            for (String str: this) {
+                if (str.toLowerCase().contains(needle)) {
+                    result.add(str);
+                }
+            }
+            return result;
+        }
+
+        if (indexModCount != modCount) rebuildIndex();
+        if (needle.length() < 3) {
+            for (int i = 0; i < folded.size(); i++) {
+                if (folded.get(i).contains(needle) && super.get(i) != null) result.add(super.get(i));
             }
+            return result;
+        }
+        for (int i : index.candidates(needle)) {
+            if (folded.get(i).contains(needle) && super.get(i) != null) result.add(super.get(i));
+        }
+        return result;
+    }
+
+    /**Find the data in the file including any of the inputted strings,
+     * ignoring case. All keywords are searched in a single pass over each
+     * line, however many there are.
+     *
+     * @param values subStrings of which at least one must be included
+     * @return the position in the state of every line found, with the line, in order
+     * */
+    public LinkedHashMap<Integer, String> findAny(Collection<String> values) {
+        AhoCorasick keywords = new AhoCorasick(values);
+        return search(() -> keywords::matches);
+    }
+
+    /**Find the data in the file where the pattern is found. Each thread
+     * reuses one Matcher for all its lines, and large states are split
+     * into ranges searched in parallel on the common ForkJoinPool.
+     *
+     * @param pattern the pattern to find in the line, "\n" included
+     * @return the position in the state of every line found, with the line, in order
+     * */
+    public LinkedHashMap<Integer, String> findRegex(Pattern pattern) {
+        return search(() -> {
+            Matcher matcher = pattern.matcher("");
+            return line -> matcher.reset(line).find();
+        });
+    }
+
+    //tests every line, test being made once per range of lines searched together
+    private LinkedHashMap<Integer, String> search(Supplier<Predicate<String>> test) {
+        applyWatched();
+        compact();
+        LinkedHashMap<Integer, String> result = new LinkedHashMap<>();
+        if (size() < PARALLEL_SEARCH) {
+            searchRange(0, size(), test.get(), result);
+            return result;
+        }
+        int ranges = ForkJoinPool.commonPool().getParallelism() * 4;
+        int step = (size() + ranges - 1) / ranges;
+        ArrayList<ForkJoinTask<LinkedHashMap<Integer, String>>> tasks = new ArrayList<>(ranges);
+        for (int from = 0; from < size(); from += step) {
+            int start = from;
+            int end = Math.min(size(), from + step);
+            tasks.add(ForkJoinPool.commonPool().submit(
+                    () -> searchRange(start, end, test.get(), new LinkedHashMap<>())));
+        }
+        for (ForkJoinTask<LinkedHashMap<Integer, String>> task : tasks) result.putAll(task.join());
+        return result;
+    }
+
+    private LinkedHashMap<Integer, String> searchRange(int from, int to, Predicate<String> test,
+                                                      LinkedHashMap<Integer, String> result) {
+        for (int i = from; i < to; i++) {
+            if (test.test(get(i))) result.put(i, get(i));
         }
         return result;
     }
 
     /**Remove the line containing the data from the state.
+     * <p>The line is looked up through a hash index and only marked as
+     * removed. size() and get() step over the removed slots, the list
+     * itself is compacted in one pass when it is iterated, changed or
+     * committed, or once the removed slots add up to a sixteenth of it,
+     * moving the indexed positions along instead of rebuilding the
+     * indexes, so removals mixed with reads stay cheap.
      * */
     public boolean removeFirstInState(String value) {
-        for (String str: this) {
-            if (str.strip().equalsIgnoreCase(value.strip())) {
-                this.remove(str);
-                return true;
-            };
+        applyWatched();
+        if (keys == null || keysModCount != modCount) rebuildKeys();
+        String key = fold(value.strip());
+        Positions positions = keys.get(key);
+        if (positions == null) return false;
+
+        int line = positions.poll();
+        if (positions.isEmpty()) keys.remove(key);
+        if (sorted != null && sortedModCount == modCount) {
+            ArrayDeque<String> lines = sorted.get(key);
+            lines.poll();
+            if (lines.isEmpty()) sorted.remove(key);
         }
-        return false;
+        super.set(line, null);
+        edits++;
+        int at = -Arrays.binarySearch(removedSlots, 0, tombstones, line) - 1;
+        if (tombstones == removedSlots.length) removedSlots = Arrays.copyOf(removedSlots, tombstones * 2);
+        System.arraycopy(removedSlots, at, removedSlots, at + 1, tombstones - at);
+        removedSlots[at] = line;
+        tombstones++;
+        appendModCount = modCount - 1;
+        log(WriteAheadLog.REMOVE, value);
+        return true;
+    }
+
+    //the state without removed slots, for views over several FileIOs
+    List<String> lines() {
+        compact();
+        return this;
+    }
+
+    /**Compact the state before iterating so removed lines never show up.
+     * */
+    @Override
+    public Iterator<String> iterator() {
+        applyWatched();
+        compact();
+        return super.iterator();
+    }
+
+    //the size leaves the removed slots out without compacting, so counting stays cheap between removals
+    @Override
+    public int size() {
+        return super.size() - tombstones;
+    }
+
+    @Override
+    public boolean isEmpty() {
+        return size() == 0;
+    }
+
+    //like iterator(), every other read of the list compacts it first so removed slots never show up
+
+
+    //a few removed slots are stepped over, the list is compacted once they add up
+    @Override
+    public String get(int index) {
+        if (tombstones > super.size() / 16) compact();
+        Objects.checkIndex(index, size());
+        //the slot is index plus the removed slots before it
+        int low = 0;
+        int high = tombstones;
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+            if (removedSlots[middle] - middle <= index) low = middle + 1;
+            else high = middle;
+        }
+        return super.get(index + low);
+    }
+
+    @Override
+    public boolean contains(Object o) {
+        compact();
+        return super.contains(o);
+    }
+
+    @Override
+    public int indexOf(Object o) {
+        compact();
+        return super.indexOf(o);
+    }
+
+    @Override
+    public int lastIndexOf(Object o) {
+        compact();
+        return super.lastIndexOf(o);
+    }
+
+    @Override
+    public Object[] toArray() {
+        compact();
+        return super.toArray();
+    }
+
+    @Override
+    public <T> T[] toArray(T[] a) {
+        compact();
+        return super.toArray(a);
+    }
+
+    @Override
+    public ListIterator<String> listIterator() {
+        compact();
+        return super.listIterator();
+    }
+
+    @Override
+    public ListIterator<String> listIterator(int index) {
+        compact();
+        return super.listIterator(index);
+    }
+
+    @Override
+    public List<String> subList(int fromIndex, int toIndex) {
+        compact();
+        return super.subList(fromIndex, toIndex);
+    }
+
+    @Override
+    public void forEach(Consumer<? super String> action) {
+        applyWatched();
+        compact();
+        super.forEach(action);
+    }
+
+    @Override
+    public Spliterator<String> spliterator() {
+        applyWatched();
+        compact();
+        return super.spliterator();
+    }
+
+    @Override
+    public void add(int index, String element) {
+        compact();
+        super.add(index, element);
+    }
+
+    @Override
+    public boolean addAll(int index, Collection<? extends String> c) {
+        compact();
+        return super.addAll(index, c);
+    }
+
+    @Override
+    public String remove(int index) {
+        compact();
+        return super.remove(index);
+    }
+
+    @Override
+    public boolean remove(Object o) {
+        compact();
+        return super.remove(o);
+    }
+
+    @Override
+    public boolean removeIf(Predicate<? super String> filter) {
+        compact();
+        return super.removeIf(filter);
+    }
+
+    @Override
+    public void replaceAll(UnaryOperator<String> operator) {
+        compact();
+        super.replaceAll(operator);
+    }
+
+    @Override
+    public void sort(Comparator<? super String> c) {
+        compact();
+        super.sort(c);
+    }
+
+    @Override
+    public void clear() {
+        super.clear();
+        tombstones = 0;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        compact();
+        return super.equals(o);
+    }
+
+    @Override
+    public int hashCode() {
+        compact();
+        return super.hashCode();
     }
 
     /**Append a String into current state (Remember to commit to save the data)
      * */
     public void append(String str) {
-        this.add(str + "\n");
+        applyWatched();
+        addLine(str + "\n");
+        log(WriteAheadLog.APPEND, str);
+    }
+
+    /**Append every String of the collection into current state in one
+     * pass, growing the storage once for all of them.
+     * (Remember to commit to save the data)
+     * */
+    public void appendAll(Collection<String> values) {
+        applyWatched();
+        reserve(size() + values.size());
+        for (String str : values) {
+            addLine(str + "\n");
+            log(WriteAheadLog.APPEND, str);
+        }
+    }
+
+    /**Remove every line matching one of the values from the state in a
+     * single pass. Lines match the same way as in removeFirstInState(),
+     * ignoring case and surrounding whitespace, but every matching line is
+     * removed, not only the first one.
+     * @return how many lines were removed.
+     * */
+    public int removeAllMatching(Set<String> values) {
+        applyWatched();
+        HashSet<String> normalized = new HashSet<>(values.size() * 2);
+        for (String value : values) normalized.add(fold(value.strip()));
+
+        int before = size();
+        boolean ordered = sorted != null && sortedModCount == modCount;
+        removeIf(line -> {
+            if (!normalized.contains(fold(line.strip()))) return false;
+            log(WriteAheadLog.REMOVE, line.strip());
+            return true;
+        });
+        if (ordered) {
+            sorted.keySet().removeAll(normalized);
+            sortedModCount = modCount;
+        }
+        return before - size();
     }
 
-    /**For printing stuffs
+    /**Run a batch of changes and commit them once at the end.
+     * <p>The write-ahead log is not written during the body, the commit
+     * at the end being the only point where the changes become durable.
+     * If that commit fails, the changes are written to the log then, so
+     * they are replayed on the next open like any change not committed.
+     * If the body throws, the changes are dropped and the exception is
+     * thrown again: the file is reloaded replaying the write-ahead log when
+     * one is used, else the state goes back to a copy taken when the
+     * transaction started, so changes made before it and not committed are
+     * kept. The file is reloaded too when the body committed.
+     * @param body the changes to make on this FileIO.
+     * @return the result of the final commit().
+     * */
+    public boolean transaction(Consumer<FileIO> body) {
+        awaitAsyncCommits();
+        Rollback before = wal == null ? new Rollback(this) : null;
+        batch = wal != null ? new ArrayList<>() : null;
+        try {
+            body.accept(this);
+        } catch (RuntimeException | Error e) {
+            batch = null;
+            rollback(before);
+            throw e;
+        }
+        ArrayList<String> changes = batch;
+        batch = null;
+        if (commit()) return true;
+        if (changes != null) logAll(changes);
+        return false;
+    }
+
+    //drops the changes not in the file or the write-ahead log, or made since the copy was taken
+    private void rollback(Rollback before) {
+        if (wal == null) {
+            awaitAsyncCommits();
+            //the file changed under the copy when the body committed or took in other writes
+            if (before.syncs != syncs || before.readOffset != readOffset) {
+                load();
+                return;
+            }
+            this.clear();
+            this.addAll(before.lines);
+            syncedSize = before.syncedSize;
+            if (before.appendOnly) appendModCount = modCount;
+            return;
+        }
+        int syncEvery = wal.getSyncEvery();
+        try {
+            wal.close();
+        } catch (IOException e) {
+            System.out.println(e.getMessage());
+        }
+        wal = null;
+        recover();
+        if (wal != null) wal.setSyncEvery(syncEvery);
+    }
+
+    //adds a line at the end, keeping the indexes up to date
+    private void addLine(String line) {
+        boolean appendOnly = appendModCount == modCount;
+        boolean indexed = index != null && indexModCount == modCount;
+        boolean keyed = keys != null && keysModCount == modCount;
+        boolean ordered = sorted != null && sortedModCount == modCount;
+        this.add(line);
+        if (appendOnly) appendModCount = modCount;
+        //positions count the removed slots not compacted yet
+        if (indexed) {
+            indexLine(super.size() - 1);
+            indexModCount = modCount;
+        }
+        if (keyed) {
+            keys.computeIfAbsent(fold(line.strip()), k -> new Positions()).add(super.size() - 1);
+            keysModCount = modCount;
+        }
+        if (ordered) {
+            sorted.computeIfAbsent(fold(line.strip()), k -> new ArrayDeque<>()).add(line);
+            sortedModCount = modCount;
+        }
+    }
+
+    //ensureCapacity counts as a change, so the markers that were current are moved along
+    private void reserve(int capacity) {
+        int before = modCount;
+        ensureCapacity(capacity);
+        if (appendModCount == before) appendModCount = modCount;
+        if (indexModCount == before) indexModCount = modCount;
+        if (keysModCount == before) keysModCount = modCount;
+        if (sortedModCount == before) sortedModCount = modCount;
+        if (snapshotModCount == before) snapshotModCount = modCount;
+    }
+
+    //the lines appended since the last sync, after a line break when the file doesn't end with one
+    private List<String> appended(long length) {
+        return separated(file.toPath(), length, subList(syncedSize, size()), charset);
+    }
+
+    //the lines to write at the given length of the file, after a line break when the file doesn't end with one
+    private static List<String> separated(Path path, long length, List<String> lines, Charset charset) {
+        byte[] lineBreak = lineBreak(charset);
+        byte[] tail = FileTail.read(path, length);
+        if (length == 0 || tail.length >= lineBreak.length && Arrays.equals(tail, tail.length - lineBreak.length,
+                tail.length, lineBreak, 0, lineBreak.length)) return lines;
+        ArrayList<String> separated = new ArrayList<>(lines.size() + 1);
+        separated.add("\n");
+        separated.addAll(lines);
+        return separated;
+    }
+
+    private void loadChunks(List<List<String>> chunks) {
+        this.clear();
+        int total = 0;
+        for (List<String> chunk : chunks) total += chunk.size();
+        this.ensureCapacity(total);
+        for (List<String> chunk : chunks) this.addAll(chunk);
+        loaded();
+        trackOffset(file.length());
+    }
+
+    //the state was just read from the file
+    private void loaded() {
+        markSynced();
+        if (index != null) rebuildIndex();
+    }
+
+    //the state now matches the file
+    private void markSynced() {
+        syncedSize = size();
+        appendModCount = modCount;
+        syncs++;
+    }
+
+    private void rebuildIndex() {
+        index.clear();
+        folded.clear();
+        folded.ensureCapacity(super.size());
+        for (int i = 0; i < super.size(); i++) {
+            indexLine(i);
+        }
+        indexModCount = modCount;
+    }
+
+    private void indexLine(int line) {
+        String lower = super.get(line) == null ? "" : super.get(line).toLowerCase();
+        folded.add(lower);
+        index.add(line, lower);
+    }
+
+    private void rebuildKeys() {
+        keys = new HashMap<>();
+        for (int i = 0; i < super.size(); i++) {
+            if (super.get(i) != null)
+                keys.computeIfAbsent(fold(super.get(i).strip()), k -> new Positions()).add(i);
+        }
+        keysModCount = modCount;
+    }
+
+    private void rebuildSorted() {
+        sorted = buildSorted();
+        sortedModCount = modCount;
+    }
+
+    private TreeMap<String, ArrayDeque<String>> buildSorted() {
+        TreeMap<String, ArrayDeque<String>> map = new TreeMap<>();
+        for (int i = 0; i < super.size(); i++) {
+            if (super.get(i) != null)
+                map.computeIfAbsent(fold(super.get(i).strip()), k -> new ArrayDeque<>()).add(super.get(i));
+        }
+        return map;
+    }
+
+    //the sorted index when on, else a one-off copy sorted for this query
+    private TreeMap<String, ArrayDeque<String>> sortedIndex() {
+        applyWatched();
+        if (sorted == null) return buildSorted();
+        if (sortedModCount != modCount) rebuildSorted();
+        return sorted;
+    }
+
+    //drops the lines removed by removeFirstInState in one pass, moving the indexed positions along
+    private void compact() {
+        if (tombstones == 0) return;
+        tombstones = 0;
+        boolean indexed = index != null && indexModCount == modCount;
+        boolean keyed = keys != null && keysModCount == modCount;
+        //the sorted index holds no positions, so dropping the slots leaves it valid
+        boolean ordered = sorted != null && sortedModCount == modCount;
+        //where every line moves to, -1 for the removed ones
+        int[] moved = new int[super.size()];
+        int kept = 0;
+        for (int i = 0; i < moved.length; i++) {
+            moved[i] = super.get(i) == null ? -1 : kept++;
+        }
+        super.removeIf(Objects::isNull);
+        if (indexed) {
+            index.remap(moved);
+            for (int i = 0; i < moved.length; i++) {
+                if (moved[i] >= 0) folded.set(moved[i], folded.get(i));
+            }
+            folded.subList(kept, folded.size()).clear();
+            indexModCount = modCount;
+        }
+        if (keyed) {
+            for (Positions positions : keys.values()) positions.remap(moved);
+            keysModCount = modCount;
+        }
+        if (ordered) sortedModCount = modCount;
+    }
+
+    //writes the whole buffer at the given position, then forces it to disk
+    private static CompletableFuture<Void> writeAsync(Path path, ByteBuffer buffer, long position,
+                                                      OpenOption option) {
+        CompletableFuture<Void> result = new CompletableFuture<>();
+        AsynchronousFileChannel channel;
+        try {
+            channel = AsynchronousFileChannel.open(path, option);
+        } catch (IOException e) {
+            return CompletableFuture.failedFuture(e);
+        }
+        channel.write(buffer, position, position, new CompletionHandler<>() {
+            @Override
+            public void completed(Integer written, Long at) {
+                if (buffer.hasRemaining()) {
+                    channel.write(buffer, at + written, at + written, this);
+                    return;
+                }
+                try {
+                    channel.force(false);
+                    result.complete(null);
+                } catch (IOException e) {
+                    result.completeExceptionally(e);
+                }
+                closeQuietly(channel);
+            }
+
+            @Override
+            public void failed(Throwable error, Long at) {
+                result.completeExceptionally(error);
+                closeQuietly(channel);
+            }
+        });
+        return result;
+    }
+
+    private static void closeQuietly(Closeable closeable) {
+        try {
+            closeable.close();
+        } catch (IOException e) {
+            System.out.println(e.getMessage());
+        }
+    }
+
+    private static void deleteQuietly(Path path) {
+        try {
+            Files.deleteIfExists(path);
+        } catch (IOException e) {
+            System.out.println(e.getMessage());
+        }
+    }
+
+    private void trackOffset(long offset) {
+        readOffset = offset;
+        tailCheck = FileTail.read(file.toPath(), offset);
+    }
+
+    //takes in the changes the watching thread saw, on the owning thread
+    private void applyWatched() {
+        if (!watchedChange) return;
+        watchedChange = false;
+        try {
+            refresh();
+        } catch (IOException e) {
+            System.out.println(e.getMessage());
+        }
+    }
+
+    //reads only what was appended since the last read, or reloads the file
+    private void refresh() throws IOException {
+        awaitAsyncCommits();
+        long length = file.length();
+        if (codec != null && length == readOffset) return;
+        if (codec != null || length < readOffset || !Arrays.equals(tailCheck, FileTail.read(file.toPath(), readOffset))) {
+            fetch();
+            return;
+        }
+        if (length == readOffset) return;
+
+        ArrayList<String> lines = new ArrayList<>();
+        //only complete lines are taken, the rest is read next time
+        long consumed = FileTail.readLines(file.toPath(), readOffset, charset, lines);
+
+        if (modCount == appendModCount && syncedSize == size()) {
+            for (String str : lines) addLine(str);
+            markSynced();
+        } else {
+            //keep the local changes not committed after the lines from the file
+            boolean appendOnly = modCount == appendModCount;
+            int at = Math.min(syncedSize, size());
+            addAll(at, lines);
+            syncedSize = at + lines.size();
+            if (appendOnly) appendModCount = modCount;
+        }
+        trackOffset(consumed);
+    }
+
+    //runs on the watching thread after the file changed, the state is left to the owning thread
+    private void follow() {
+        List<String> lines;
+        synchronized (file) {
+            if (followed == null) return;
+            //this FileIO is writing the file, it catches up once done
+            if (ownWrites > 0) {
+                missedChange = true;
+                return;
+            }
+            lines = readFollowed();
+        }
+        notifyWatch(lines);
+    }
+
+    //reads the lines past the followed end, or every line when the file was truncated or rewritten; holds file
+    private List<String> readFollowed() {
+        Path path = file.toPath();
+        long length = file.length();
+        try {
+            if (length == followed.offset && Arrays.equals(followed.tail, FileTail.read(path, length))) return List.of();
+            watchedChange = true;
+            ArrayList<String> lines = new ArrayList<>();
+            long consumed;
+            if (codec == null && length > followed.offset
+                    && Arrays.equals(followed.tail, FileTail.read(path, followed.offset))) {
+                consumed = FileTail.readLines(path, followed.offset, charset, lines);
+            } else if (codec == null) {
+                consumed = FileTail.readLines(path, 0, charset, lines);
+            } else {
+                for (List<String> block : BlockFile.readAll(path, codec, charset, ForkJoinPool.commonPool())) {
+                    lines.addAll(block);
+                }
+                consumed = length;
+            }
+            followed = new FileEnd(consumed, FileTail.read(path, consumed));
+            return lines;
+        } catch (IOException e) {
+            System.out.println(e.getMessage());
+            return List.of();
+        }
+    }
+
+    //keeps the watching thread off the file while this FileIO writes it, handing over what it
+    //didn't read yet first; returns the length before the write
+    private long beginWrite() {
+        List<String> lines;
+        long length;
+        synchronized (file) {
+            ownWrites++;
+            length = file.length();
+            if (followed == null) return length;
+            lines = readFollowed();
+            handedOver = followed.offset;
+        }
+        notifyWatch(lines);
+        return length;
+    }
+
+    //moves the followed end past what this FileIO wrote, then reads what changed meanwhile
+    private void endWrite(long end, boolean replaced) {
+        List<String> lines = List.of();
+        synchronized (file) {
+            ownWrites--;
+            if (followed == null) return;
+            //the end of the write isn't known when it failed or replaced the file
+            long offset = end < 0 || replaced ? file.length() : end;
+            followed = new FileEnd(offset, FileTail.read(file.toPath(), offset));
+            if (ownWrites == 0 && missedChange) {
+                missedChange = false;
+                lines = readFollowed();
+            }
+        }
+        notifyWatch(lines);
+    }
+
+    //hands lines over to the watch listener, outside of the lock
+    private void notifyWatch(List<String> lines) {
+        Consumer<List<String>> listener;
+        synchronized (file) {
+            listener = onChange;
+        }
+        if (listener != null && !lines.isEmpty()) listener.accept(lines);
+    }
+
+    private Path snapshotPath() {
+        return new File(file.getPath() + ".snap").toPath();
+    }
+
+    private void writeSnapshot() {
+        try {
+            if (index != null && indexModCount != modCount) rebuildIndex();
+            SnapshotFile.write(snapshotPath(), file.toPath(), this, index, charset, codecName(codec));
+        } catch (IOException e) {
+            System.out.println(e.getMessage());
+        }
+    }
+
+    //loads the state from a valid snapshot, false when there's none
+    private boolean loadSnapshot() {
+        try {
+            SnapshotFile.Content content = SnapshotFile.read(snapshotPath(), file.toPath(), charset, codecName(codec));
+            if (content == null) return false;
+            this.clear();
+            this.addAll(content.lines);
+            markSynced();
+            if (index != null && content.index != null) {
+                index = content.index;
+                folded.clear();
+                for (String str : this) folded.add(str.toLowerCase());
+                indexModCount = modCount;
+            } else if (index != null) {
+                rebuildIndex();
+            } else {
+                snapshotIndex = content.index;
+                snapshotModCount = modCount;
+            }
+            trackOffset(file.length());
+            return true;
+        } catch (IOException e) {
+            return false;
+        }
+    }
+
+    private Path walPath() {
+        return new File(file.getPath() + ".wal").toPath();
+    }
+
+    private void log(byte type, String value) {
+        if (batch != null) {
+            batch.add((char) type + value);
+            return;
+        }
+        if (wal == null) return;
+        try {
+            wal.log(type, value);
+        } catch (IOException e) {
+            System.out.println(e.getMessage());
+        }
+    }
+
+    //logs the changes kept back by transaction(), then forces them to disk
+    private void logAll(List<String> changes) {
+        try {
+            for (String change : changes) wal.log((byte) change.charAt(0), change.substring(1));
+            wal.sync();
+        } catch (IOException e) {
+            System.out.println(e.getMessage());
+        }
+    }
+
+    private void resetWal() {
+        if (wal == null) return;
+        try {
+            wal.reset();
+        } catch (IOException e) {
+            System.out.println(e.getMessage());
+        }
+    }
+
+    private void abortWalCommit() {
+        if (wal == null) return;
+        try {
+            wal.abortCommit();
+        } catch (IOException e) {
+            System.out.println(e.getMessage());
+        }
+    }
+
+    //loads the file then replays the changes left in the write-ahead log
+    private void recover() {
+        try {
+            WriteAheadLog log = new WriteAheadLog(walPath(), 1);
+            List<WriteAheadLog.Record> records = log.read();
+            int pending = records.size();
+            if (pending > 0) {
+                WriteAheadLog.Record last = records.get(pending - 1);
+                if (last.type == WriteAheadLog.COMMIT_APPEND || last.type == WriteAheadLog.COMMIT_REWRITE) {
+                    pending--;
+                    if (commitFinished(last)) {
+                        pending = 0;
+                        log.reset();
+                    } else {
+                        //an append cut short leaves a partial tail behind
+                        if (last.type == WriteAheadLog.COMMIT_APPEND && file.length() > last.first()) {
+                            try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.WRITE)) {
+                                channel.truncate(last.first());
+                            }
+                        }
+                        log.truncate(last.position);
+                    }
+                }
+            }
+
+            load();
+            for (int i = 0; i < pending; i++) {
+                WriteAheadLog.Record record = records.get(i);
+                if (record.type == WriteAheadLog.APPEND) append(record.value());
+                else if (record.type == WriteAheadLog.REMOVE) removeFirstInState(record.value());
+            }
+            wal = log;
+        } catch (IOException e) {
+            System.out.println(e.getMessage());
+            load();
+        }
+    }
+
+    private boolean commitFinished(WriteAheadLog.Record commit) throws IOException {
+        if (!file.exists()) return false;
+        if (commit.type == WriteAheadLog.COMMIT_APPEND) return file.length() == commit.second();
+        if (file.length() != commit.first()) return false;
+
+        CRC32 crc = new CRC32();
+        try (InputStream stream = new BufferedInputStream(new FileInputStream(file))) {
+            byte[] buffer = new byte[8192];
+            for (int read = stream.read(buffer); read > 0; read = stream.read(buffer)) {
+                crc.update(buffer, 0, read);
+            }
+        }
+        return crc.getValue() == commit.second();
+    }
+
+    /**Fold the case of a value the way equalsIgnoreCase() compares,
+     * whatever the default locale, for the normalized keys of the lines.
+     * */
+    static String fold(String value) {
+        StringBuilder folded = new StringBuilder(value.length());
+        for (int i = 0; i < value.length(); ) {
+            int c = value.codePointAt(i);
+            folded.appendCodePoint(Character.toLowerCase(Character.toUpperCase(c)));
+            i += Character.charCount(c);
+        }
+        return folded.toString();
+    }
+
+    //the bytes of '\n' alone, without the byte order mark some charsets start with
+    private static byte[] lineBreak(Charset charset) {
+        byte[] one = "\n".getBytes(charset);
+        byte[] two = "\n\n".getBytes(charset);
+        return Arrays.copyOfRange(two, one.length, two.length);
+    }
+
+    //encodes the lines to write at the given length of a file, past the start without the byte
+    //order mark charsets like UTF-16 put first, as it would land in the middle of the file
+    static byte[] encode(List<String> lines, Charset charset, long length) {
+        byte[] bytes = String.join("", lines).getBytes(charset);
+        int mark = length == 0 ? 0 : "\n".getBytes(charset).length - lineBreak(charset).length;
+        return mark == 0 || bytes.length < mark ? bytes : Arrays.copyOfRange(bytes, mark, bytes.length);
+    }
+
+    /**Append the given lines to the end of the file through an
+     * append-only channel, after a line break when the file doesn't end
+     * with one.
+     * */
+    static void appendLines(Path path, List<String> lines, Charset charset) throws IOException {
+        long length = Files.exists(path) ? Files.size(path) : 0;
+        appendBytes(path, encode(separated(path, length, lines, charset), charset, length));
+    }
+
+    static void appendBytes(Path path, byte[] bytes) throws IOException {
+        ByteBuffer buffer = ByteBuffer.wrap(bytes);
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE,
+                StandardOpenOption.WRITE, StandardOpenOption.APPEND)) {
+            while (buffer.hasRemaining()) channel.write(buffer);
+            channel.force(false);
+        }
+    }
+
+    /**Write the lines into a temporary file next to the target then
+     * move it over the target in one atomic step.
+     * */
+    static void replaceLines(Path path, List<String> lines, Charset charset) throws IOException {
+        Path temp = writeTemp(path, lines, new CRC32(), null, charset);
+        try {
+            moveInto(temp, path);
+        } finally {
+            Files.deleteIfExists(temp);
+        }
+    }
+
+    /**Write the lines into a synced temporary file next to the target.
+     * @param crc updated with every byte written.
+     * @param codec compresses the lines into blocks, null for plain text.
+     * */
+    static Path writeTemp(Path path, List<String> lines, CRC32 crc, BlockCodec codec,
+                          Charset charset) throws IOException {
+        Path temp = createTemp(path);
+        try (FileOutputStream stream = new FileOutputStream(temp.toFile())) {
+            OutputStream checked = new BufferedOutputStream(new CheckedOutputStream(stream, crc));
+            if (codec != null) {
+                BlockFile.write(checked, lines, codec, charset);
+            } else {
+                Writer writer = new OutputStreamWriter(checked, charset);
+                for (String str : lines) {
+                    writer.append(str);
+                }
+                writer.flush();
+            }
+            checked.flush();
+            stream.getFD().sync();
+        } catch (IOException e) {
+            Files.deleteIfExists(temp);
+            throw e;
+        }
+        return temp;
+    }
+
+    /**Create an empty temporary file next to the target, with the
+     * permissions of the target when it exists.
+     * */
+    static Path createTemp(Path path) throws IOException {
+        Path target = path.toAbsolutePath();
+        Path temp = Files.createTempFile(target.getParent(), target.getFileName().toString(), ".tmp");
+        try {
+            if (Files.exists(target))
+                Files.setPosixFilePermissions(temp, Files.getPosixFilePermissions(target));
+        } catch (UnsupportedOperationException e) {
+            //not a POSIX file system, the defaults will do
+        }
+        return temp;
+    }
+
+    static void moveInto(Path temp, Path path) throws IOException {
+        try {
+            Files.move(temp, path.toAbsolutePath(), StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        } catch (AtomicMoveNotSupportedException e) {
+            Files.move(temp, path.toAbsolutePath(), StandardCopyOption.REPLACE_EXISTING);
+        }
+    }
+
+    /**Write the current state into the channel, line by line through
+     * one small buffer instead of joining it into a single String.
+     * <p>When nothing changed since the last fetch or commit and the file
+     * is still the one that was read, its bytes are handed straight to the
+     * channel with FileChannel.transferTo, line breaks included as they are
+     * in the file.
+     * @return how many bytes were written.
+     * @throws IOException when reading the file or writing the channel fails.
+     * */
+    public long writeTo(WritableByteChannel target) throws IOException {
+        awaitAsyncCommits();
+        applyWatched();
+        if (matchesFile()) {
+            try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+                long position = 0;
+                while (position < readOffset) {
+                    long sent = channel.transferTo(position, readOffset - position, target);
+                    if (sent <= 0) throw new IOException("File changed while being written out.");
+                    position += sent;
+                }
+                return position;
+            }
+        }
+        CharsetEncoder encoder = charset.newEncoder()
+                .onMalformedInput(CodingErrorAction.REPLACE)
+                .onUnmappableCharacter(CodingErrorAction.REPLACE);
+        ByteBuffer buffer = ByteBuffer.allocate(ASYNC_CHUNK);
+        long written = 0;
+        for (String line : this) {
+            CharBuffer chars = CharBuffer.wrap(line);
+            while (encoder.encode(chars, buffer, false).isOverflow()) {
+                written += drain(buffer, target);
+            }
+        }
+        CharBuffer end = CharBuffer.allocate(0);
+        while (encoder.encode(end, buffer, true).isOverflow()) written += drain(buffer, target);
+        while (encoder.flush(buffer).isOverflow()) written += drain(buffer, target);
+        return written + drain(buffer, target);
+    }
+
+    /**Same as writeTo(WritableByteChannel), the stream is left open.
+     * */
+    public long writeTo(OutputStream out) throws IOException {
+        long written = writeTo(Channels.newChannel(out));
+        out.flush();
+        return written;
+    }
+
+    //nothing changed since the file was read or written, and the file wasn't touched since
+    private boolean matchesFile() {
+        return codec == null && file.exists() && tombstones == 0
+                && modCount == appendModCount && syncedSize == size()
+                && file.length() == readOffset && Arrays.equals(FileTail.read(file.toPath(), readOffset), tailCheck);
+    }
+
+    private static int drain(ByteBuffer buffer, WritableByteChannel target) throws IOException {
+        buffer.flip();
+        int count = buffer.remaining();
+        while (buffer.hasRemaining()) target.write(buffer);
+        buffer.clear();
+        return count;
+    }
+
+    //the charset and codec aren't serializable, so they are written by name
+    private void writeObject(ObjectOutputStream out) throws IOException {
+        if (codec != null && codec != BlockCodec.DEFLATE && codec != BlockCodec.GZIP)
+            throw new NotSerializableException("FileIO with a custom BlockCodec " + codec.getClass().getName());
+        out.defaultWriteObject();
+        out.writeUTF(charset.name());
+        out.writeUTF(codecName(codec));
+    }
+
+    //the name a codec is recorded by, empty for plain text; custom codecs go by their class
+    private static String codecName(BlockCodec codec) {
+        if (codec == null) return "";
+        if (codec == BlockCodec.DEFLATE) return "DEFLATE";
+        if (codec == BlockCodec.GZIP) return "GZIP";
+        return codec.getClass().getName();
+    }
+
+    //the indexes, log and watcher are left off, turn them on again when needed
+    private void readObject(ObjectInputStream in) throws IOException, ClassNotFoundException {
+        in.defaultReadObject();
+        charset = Charset.forName(in.readUTF());
+        String name = in.readUTF();
+        codec = name.equals("DEFLATE") ? BlockCodec.DEFLATE : name.equals("GZIP") ? BlockCodec.GZIP : null;
+        //the removed slots come back as nulls without their positions
+        removedSlots = new int[8];
+        compact();
+        //modCount isn't serialized, so the file may no longer match; the next commit rewrites it
+        appendModCount = modCount - 1;
+    }
+
+    /**For printing stuffs, writeTo() exports without building the String.
      * */
     public String toString() {
         return String.join("", getState());
     }
-}
\ No newline at end of file
+
+    /**The state a commitAsync() write was captured from, and the end of
+     * the file once written.
+     * */
+    private static final class AsyncCommit {
+        private final int size;
+        private final int modCount;
+        private final int edits;
+        private final int syncs;
+        private final long length;
+        private final byte[] tail;
+
+        private AsyncCommit(int size, int modCount, int edits, int syncs, long length, byte[] tail) {
+            this.size = size;
+            this.modCount = modCount;
+            this.edits = edits;
+            this.syncs = syncs;
+            this.length = length;
+            this.tail = tail;
+        }
+    }
+
+    /**The state a transaction() without a write-ahead log goes back to
+     * when its body throws.
+     * */
+    private static final class Rollback {
+        private final ArrayList<String> lines;
+        private final int syncedSize;
+        private final boolean appendOnly;
+        private final int syncs;
+        private final long readOffset;
+
+        private Rollback(FileIO io) {
+            this.lines = new ArrayList<>(io);
+            this.syncedSize = io.syncedSize;
+            this.appendOnly = io.appendModCount == io.modCount;
+            this.syncs = io.syncs;
+            this.readOffset = io.readOffset;
+        }
+    }
+
+    /**Where a file ended when last read or written, and the bytes right
+     * before that point.
+     * */
+    private static final class FileEnd {
+        private final long offset;
+        private final byte[] tail;
+
+        private FileEnd(long offset, byte[] tail) {
+            this.offset = offset;
+            this.tail = tail;
+        }
+    }
+
+    /**A fetchAsync() result whose cancellation can't slip in between the
+     * check for it and the swap of the loaded state.
+     * */
+    private static final class Loading extends CompletableFuture<FileIO> {
+        @Override
+        public synchronized boolean cancel(boolean mayInterruptIfRunning) {
+            return super.cancel(mayInterruptIfRunning);
+        }
+
+        @Override
+        public synchronized boolean completeExceptionally(Throwable ex) {
+            return super.completeExceptionally(ex);
+        }
+    }
+
+    /**Positions of the lines sharing a normalized value, in file order.
+     * */
+    private static final class Positions {
+        private int[] lines = new int[1];
+        private int head;
+        private int size;
+
+        private void add(int line) {
+            if (size == lines.length) lines = Arrays.copyOf(lines, size * 2);
+            lines[size++] = line;
+        }
+
+        private int poll() {
+            return lines[head++];
+        }
+
+        private boolean isEmpty() {
+            return head == size;
+        }
+
+        //moves the positions left after compact(), dropping the removed ones
+        private void remap(int[] moved) {
+            int kept = 0;
+            for (int i = head; i < size; i++) {
+                if (moved[lines[i]] >= 0) lines[kept++] = moved[lines[i]];
+            }
+            head = 0;
+            size = kept;
+        }
+    }
+}
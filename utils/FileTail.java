@@ -0,0 +1,109 @@
+package utils;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.List;
+
+/**Reads around the end of a file already loaded by a FileIO: the bytes
+ * right before a point, used to tell an append from a rewrite, and the
+ * lines appended after it.
+ * */
+final class FileTail {
+    private static final int CHUNK = 64 * 1024;
+    static final int CHECK = 64;
+
+    private FileTail() {
+    }
+
+    /**Return the (up to CHECK) bytes right before offset, or an empty
+     * array when the file is shorter or can't be read.
+     * */
+    static byte[] read(Path path, long offset) {
+        ByteBuffer buffer = ByteBuffer.allocate((int) Math.min(CHECK, offset));
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            while (buffer.hasRemaining()) {
+                if (channel.read(buffer, offset - buffer.capacity() + buffer.position()) < 0) break;
+            }
+        } catch (IOException e) {
+            return new byte[0];
+        }
+        return buffer.hasRemaining() ? new byte[0] : buffer.array();
+    }
+
+    /**Return where the bytes were found first at or after the offset,
+     * or -1 when they aren't there.
+     * */
+    static long indexOf(Path path, long offset, byte[] bytes) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            long size = channel.size();
+            if (size - offset < bytes.length) return -1;
+            ByteBuffer buffer = ByteBuffer.allocate((int) Math.min(Integer.MAX_VALUE - 8, size - offset));
+            while (buffer.hasRemaining()) {
+                if (channel.read(buffer, offset + buffer.position()) < 0) break;
+            }
+            byte[] region = buffer.array();
+            for (int i = 0; i + bytes.length <= buffer.position(); i++) {
+                if (Arrays.equals(region, i, i + bytes.length, bytes, 0, bytes.length)) return offset + i;
+            }
+            return -1;
+        }
+    }
+
+    /**Read the complete lines written after the offset, each ending with
+     * "\n". Lines end on "\n", "\r\n" or a lone "\r" like with
+     * BufferedReader. A last line without its line break, or with only a
+     * '\r' that may still be followed by '\n', is left for the next read.
+     * @param lines receives the lines read.
+     * @return the offset right after the last complete line.
+     * */
+    static long readLines(Path path, long offset, Charset charset, List<String> lines) throws IOException {
+        return readLines(path, offset, Long.MAX_VALUE, charset, lines);
+    }
+
+    /**Same as readLines(Path, long, Charset, List) reading no further
+     * than the end offset.
+     * */
+    static long readLines(Path path, long offset, long end, Charset charset, List<String> lines) throws IOException {
+        ByteArrayOutputStream line = new ByteArrayOutputStream();
+        ByteBuffer buffer = ByteBuffer.allocate(CHUNK);
+        long position = offset;
+        long consumed = offset;
+        boolean afterReturn = false;
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            if (end - position < CHUNK) buffer.limit((int) Math.max(0, end - position));
+            for (int read = channel.read(buffer, position); read > 0; read = channel.read(buffer, position)) {
+                buffer.flip();
+                while (buffer.hasRemaining()) {
+                    byte b = buffer.get();
+                    position++;
+                    if (afterReturn) {
+                        //the line before the '\r' is complete now, with or without a '\n' after it
+                        afterReturn = false;
+                        lines.add(line.toString(charset) + "\n");
+                        line.reset();
+                        consumed = b == '\n' ? position : position - 1;
+                        if (b == '\n') continue;
+                    }
+                    if (b == '\r') {
+                        afterReturn = true;
+                    } else if (b == '\n') {
+                        lines.add(line.toString(charset) + "\n");
+                        line.reset();
+                        consumed = position;
+                    } else {
+                        line.write(b);
+                    }
+                }
+                buffer.clear();
+                if (end - position < CHUNK) buffer.limit((int) Math.max(0, end - position));
+            }
+        }
+        return consumed;
+    }
+}
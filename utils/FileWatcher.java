@@ -0,0 +1,56 @@
+package utils;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.file.*;
+
+/**Waits for changes to one file through a WatchService on a daemon
+ * thread, for FileIO.watch(). The directory of the file is watched, and
+ * only events about the file itself are passed on.
+ * */
+final class FileWatcher implements Closeable {
+    private final WatchService service;
+
+    /**Start watching the file.
+     * @param onChange run on the watching thread after each batch of
+     *                 events about the file.
+     * */
+    FileWatcher(Path file, Runnable onChange) throws IOException {
+        Path directory = file.toAbsolutePath().getParent();
+        String name = file.getFileName().toString();
+        service = directory.getFileSystem().newWatchService();
+        try {
+            directory.register(service, StandardWatchEventKinds.ENTRY_CREATE,
+                    StandardWatchEventKinds.ENTRY_MODIFY);
+        } catch (IOException e) {
+            service.close();
+            throw e;
+        }
+        Thread thread = new Thread(() -> follow(name, onChange), "FileIO-watch-" + name);
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    /**Stop watching, the watching thread ends on its next wait.
+     * */
+    @Override
+    public void close() throws IOException {
+        service.close();
+    }
+
+    private void follow(String name, Runnable onChange) {
+        try {
+            while (true) {
+                WatchKey key = service.take();
+                boolean changed = false;
+                for (WatchEvent<?> event : key.pollEvents()) {
+                    if (name.equals(String.valueOf(event.context()))) changed = true;
+                }
+                key.reset();
+                if (changed) onChange.run();
+            }
+        } catch (InterruptedException | ClosedWatchServiceException e) {
+            //close() closed the service
+        }
+    }
+}
@@ -0,0 +1,149 @@
+package utils;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+
+/**Byte level helpers shared by the FileIO stores that keep
+ * lines as raw bytes instead of Strings.
+ * */
+final class LineBytes {
+    private LineBytes() {
+    }
+
+    /**Return true when every byte in [from, to) is plain ASCII.
+     * */
+    static boolean isAscii(ByteBuffer buffer, int from, int to) {
+        for (int i = from; i < to; i++) {
+            if (buffer.get(i) < 0) return false;
+        }
+        return true;
+    }
+
+    /**Return the lowercase ASCII bytes of the needle, or null
+     * when the needle can never be found in an ASCII only line.
+     * @param needle a String already lowercased by the caller.
+     * */
+    static byte[] asciiNeedle(String needle) {
+        for (int i = 0; i < needle.length(); i++) {
+            if (needle.charAt(i) > 0x7F) return null;
+        }
+        return needle.getBytes(StandardCharsets.US_ASCII);
+    }
+
+    /**Case-insensitive search of an ASCII needle inside [from, to),
+     * no allocation is made.
+     * @param needle lowercase ASCII bytes.
+     * @return the offset of the first match or -1.
+     * */
+    static int indexOfIgnoreCase(ByteBuffer buffer, int from, int to, byte[] needle) {
+        int last = to - needle.length;
+        outer:
+        for (int i = from; i <= last; i++) {
+            for (int j = 0; j < needle.length; j++) {
+                if (toLower(buffer.get(i + j)) != needle[j]) continue outer;
+            }
+            return i;
+        }
+        return -1;
+    }
+
+    /**Return the index of the next '\n' in [from, to) or -1.
+     * */
+    static int nextLineBreak(ByteBuffer buffer, int from, int to) {
+        for (int i = from; i < to; i++) {
+            if (buffer.get(i) == '\n') return i;
+        }
+        return -1;
+    }
+
+    /**Return the index of the next '\n' or '\r' in [from, to) or -1,
+     * the two bytes that end a line for BufferedReader.
+     * */
+    static int nextTerminator(ByteBuffer buffer, int from, int to) {
+        for (int i = from; i < to; i++) {
+            byte b = buffer.get(i);
+            if (b == '\n' || b == '\r') return i;
+        }
+        return -1;
+    }
+
+    /**Return where the line after the terminator at the given index
+     * starts, a "\r\n" pair being one terminator.
+     * */
+    static int skipTerminator(ByteBuffer buffer, int at, int to) {
+        if (buffer.get(at) == '\r' && at + 1 < to && buffer.get(at + 1) == '\n') return at + 2;
+        return at + 1;
+    }
+
+    /**Return the end of the line content ending at the given line break
+     * position, dropping a '\r' the same way BufferedReader does.
+     * */
+    static int trimCarriageReturn(ByteBuffer buffer, int start, int end) {
+        if (end > start && buffer.get(end - 1) == '\r') return end - 1;
+        return end;
+    }
+
+    /**Decode [from, to) as UTF-8 into a String.
+     * */
+    static String decode(ByteBuffer buffer, int from, int to) {
+        byte[] bytes = new byte[to - from];
+        buffer.get(from, bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    /**Read the rest of the channel line by line into the list, each
+     * line ending with "\n" like FileIO stores them. Lines end the same
+     * way as with BufferedReader, on "\n", "\r\n" or a lone "\r". They are
+     * cut on the raw bytes and decoded straight from one reused buffer, so
+     * only use it with charsets where ParallelLineLoader.supports() is true.
+     * */
+    static void readLines(ReadableByteChannel channel, Charset charset, List<String> lines) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(64 * 1024);
+        byte[] line = new byte[256];
+        boolean end = false;
+        while (!end) {
+            end = channel.read(buffer) < 0;
+            int limit = buffer.position();
+            int start = 0;
+            for (int at = nextTerminator(buffer, start, limit); at >= 0; at = nextTerminator(buffer, start, limit)) {
+                //a '\r' ending the buffer may be the first half of "\r\n", wait for the next read
+                if (!end && at == limit - 1 && buffer.get(at) == '\r') break;
+                line = decodeLine(buffer, start, at, line, charset, lines);
+                start = skipTerminator(buffer, at, limit);
+            }
+            if (end) {
+                if (start < limit) decodeLine(buffer, start, limit, line, charset, lines);
+            } else if (start == 0 && limit == buffer.capacity()) {
+                //a line longer than the buffer
+                buffer = ByteBuffer.allocate(buffer.capacity() * 2).put(buffer.flip());
+            } else {
+                //keep the unfinished line for the next read
+                buffer.position(start).limit(limit);
+                buffer.compact();
+            }
+        }
+    }
+
+    /**Decode [from, to) together with a "\n" into one String added to
+     * the list, so the line break costs no extra copy.
+     * @param scratch the buffer to copy the bytes into.
+     * @return the scratch buffer, grown when the line didn't fit.
+     * */
+    static byte[] decodeLine(ByteBuffer buffer, int from, int to, byte[] scratch, Charset charset,
+                             List<String> lines) {
+        int length = to - from;
+        if (length + 1 > scratch.length) scratch = new byte[Math.max(length + 1, scratch.length * 2)];
+        buffer.get(from, scratch, 0, length);
+        scratch[length] = '\n';
+        lines.add(new String(scratch, 0, length + 1, charset));
+        return scratch;
+    }
+
+    private static byte toLower(byte b) {
+        return (b >= 'A' && b <= 'Z') ? (byte) (b + 32) : b;
+    }
+}
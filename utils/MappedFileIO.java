@@ -0,0 +1,221 @@
+package utils;
+
+import java.io.*;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.*;
+
+/**A read only FileIO backed by a memory-mapped file. Lines are
+ * never copied onto the heap as a whole, they are handed out as
+ * CharSequence views over the mapped region while iterating.
+ * <p>
+ * The file is expected to be UTF-8 (or plain ASCII). Use this instead of
+ * FileIO for files too large to be held in memory.
+ * @author hatohui
+ * */
+public class MappedFileIO implements Iterable<CharSequence> {
+    private static final int MAX_REGION = Integer.MAX_VALUE - 8;
+    private final File file;
+    private MappedByteBuffer[] regions = new MappedByteBuffer[0];
+    private long[] lineStarts;
+    private int lineCount = -1;
+
+    /**Constructor for MappedFileIO
+     * Used for adding urls
+     * @param url the path to the file.
+     * */
+    public MappedFileIO(String url) {
+        file = new File(url);
+        fetch();
+    }
+
+    /**Map the file into memory, replacing any previous mapping.
+     * Nothing is decoded until the lines are iterated.
+     * */
+    public void fetch() {
+        lineStarts = null;
+        lineCount = -1;
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            ArrayList<MappedByteBuffer> mapped = new ArrayList<>();
+            long size = channel.size();
+            long position = 0;
+            while (position < size) {
+                long length = Math.min(MAX_REGION, size - position);
+                MappedByteBuffer region = channel.map(FileChannel.MapMode.READ_ONLY, position, length);
+                //cut the region at its last line break so no line spans two regions
+                if (position + length < size) {
+                    int end = (int) length - 1;
+                    while (end >= 0 && region.get(end) != '\n') end--;
+                    if (end < 0)
+                        throw new IllegalStateException("A line is longer than " + MAX_REGION + " bytes.");
+                    length = end + 1;
+                    region = channel.map(FileChannel.MapMode.READ_ONLY, position, length);
+                }
+                mapped.add(region);
+                position += length;
+            }
+            regions = mapped.toArray(new MappedByteBuffer[0]);
+        } catch (IOException e) {
+            if (e instanceof FileNotFoundException || e instanceof java.nio.file.NoSuchFileException) {
+                System.out.println("File not found.");
+            }
+            regions = new MappedByteBuffer[0];
+            System.out.println(e.getMessage());
+        }
+    }
+
+    /**Iterate the lines of the file lazily, each line is a view
+     * over the mapped file without its line break.
+     * */
+    @Override
+    public Iterator<CharSequence> iterator() {
+        return new Iterator<>() {
+            private int region = 0;
+            private int position = 0;
+
+            @Override
+            public boolean hasNext() {
+                while (region < regions.length && position >= regions[region].limit()) {
+                    region++;
+                    position = 0;
+                }
+                return region < regions.length;
+            }
+
+            @Override
+            public CharSequence next() {
+                if (!hasNext()) throw new NoSuchElementException();
+                MappedByteBuffer buffer = regions[region];
+                int start = position;
+                int end = LineBytes.nextLineBreak(buffer, start, buffer.limit());
+                if (end < 0) end = buffer.limit();
+                position = end + 1;
+                return new LineView(buffer, start, LineBytes.trimCarriageReturn(buffer, start, end));
+            }
+        };
+    }
+
+    /**Return a list view of the lines in the file. The first call
+     * scans the file once for line offsets, lines are still only
+     * decoded when accessed.
+     * @return a List of CharSequence, each one a line in the file.
+     * */
+    public List<CharSequence> getState() {
+        if (regions.length == 0)
+            throw new IllegalStateException("there's no data in current state.");
+        if (lineStarts == null) indexLines();
+        return new AbstractList<>() {
+            @Override
+            public CharSequence get(int index) {
+                Objects.checkIndex(index, lineCount);
+                long start = lineStarts[index];
+                MappedByteBuffer buffer = regions[(int) (start >>> 32)];
+                int from = (int) start;
+                int end = LineBytes.nextLineBreak(buffer, from, buffer.limit());
+                if (end < 0) end = buffer.limit();
+                return new LineView(buffer, from, LineBytes.trimCarriageReturn(buffer, from, end));
+            }
+
+            @Override
+            public int size() {
+                return lineCount;
+            }
+        };
+    }
+
+    /**Find the data in the file including the inputted string, ignoring case.
+     * Only the matching lines are turned into Strings.
+     *
+     * @param value subString to be included
+     * @return an ArrayList of String containing the data included
+     * */
+    public ArrayList<String> findInclude(String value) {
+        ArrayList<String> result = new ArrayList<>();
+        String needle = value.toLowerCase();
+        byte[] asciiNeedle = LineBytes.asciiNeedle(needle);
+        for (CharSequence sequence : this) {
+            LineView line = (LineView) sequence;
+            if (line.isAscii()) {
+                if (asciiNeedle != null
+                        && LineBytes.indexOfIgnoreCase(line.buffer, line.start, line.end, asciiNeedle) >= 0)
+                    result.add(line + "\n");
+            } else if (line.toString().toLowerCase().contains(needle)) {
+                result.add(line + "\n");
+            }
+        }
+        return result;
+    }
+
+    /**Return the number of lines in the file.
+     * */
+    public int size() {
+        if (lineStarts == null) indexLines();
+        return lineCount;
+    }
+
+    //each entry holds the region in the high half and the offset in the low half
+    private void indexLines() {
+        long[] starts = new long[1024];
+        int count = 0;
+        for (int r = 0; r < regions.length; r++) {
+            MappedByteBuffer buffer = regions[r];
+            int position = 0;
+            while (position < buffer.limit()) {
+                if (count == starts.length) starts = Arrays.copyOf(starts, count * 2);
+                starts[count++] = ((long) r << 32) | position;
+                int end = LineBytes.nextLineBreak(buffer, position, buffer.limit());
+                position = end < 0 ? buffer.limit() : end + 1;
+            }
+        }
+        lineStarts = starts;
+        lineCount = count;
+    }
+
+    /**A line of the mapped file. ASCII lines are read straight from
+     * the mapping, other lines are decoded once on first access.
+     * */
+    private static final class LineView implements CharSequence {
+        private final MappedByteBuffer buffer;
+        private final int start;
+        private final int end;
+        private byte ascii = -1;
+        private String decoded;
+
+        private LineView(MappedByteBuffer buffer, int start, int end) {
+            this.buffer = buffer;
+            this.start = start;
+            this.end = end;
+        }
+
+        private boolean isAscii() {
+            if (ascii < 0) ascii = (byte) (LineBytes.isAscii(buffer, start, end) ? 1 : 0);
+            return ascii == 1;
+        }
+
+        @Override
+        public int length() {
+            return isAscii() ? end - start : toString().length();
+        }
+
+        @Override
+        public char charAt(int index) {
+            if (!isAscii()) return toString().charAt(index);
+            Objects.checkIndex(index, end - start);
+            return (char) buffer.get(start + index);
+        }
+
+        @Override
+        public CharSequence subSequence(int from, int to) {
+            if (!isAscii()) return toString().subSequence(from, to);
+            Objects.checkFromToIndex(from, to, end - start);
+            return new LineView(buffer, start + from, start + to);
+        }
+
+        @Override
+        public String toString() {
+            if (decoded == null) decoded = LineBytes.decode(buffer, start, end);
+            return decoded;
+        }
+    }
+}
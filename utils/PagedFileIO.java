@@ -0,0 +1,216 @@
+package utils;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.StandardOpenOption;
+import java.util.*;
+
+/**A read only FileIO for files bigger than the heap. The file is cut
+ * into pages of a fixed number of lines and only a limited number of
+ * pages are kept in memory, the least recently used one being dropped
+ * first. Pages are read from the file again when needed.
+ * <p>Only the byte offset of every page is kept for the whole file.
+ * Hit and miss counters tell how well the cache is sized.
+ * @author hatohui
+ * */
+public class PagedFileIO extends AbstractList<String> implements RandomAccess {
+    private final File file;
+    private final Charset charset;
+    private final int pageLines;
+    private final LinkedHashMap<Integer, List<String>> pages;
+    //pageStarts[k] is where page k starts, the last entry is the end of the file
+    private long[] pageStarts = new long[1];
+    private int pageCount;
+    private int lineCount;
+    private long hits;
+    private long misses;
+
+    /**Constructor for PagedFileIO, with pages of 1024 lines and
+     * at most 64 pages in memory.
+     * @param url the path to the file.
+     * */
+    public PagedFileIO(String url) {
+        this(url, 1024, 64);
+    }
+
+    /**Constructor for PagedFileIO.
+     * @param url the path to the file.
+     * @param pageLines how many lines make a page.
+     * @param maxPages how many pages may stay in memory.
+     * @throws IllegalArgumentException when pageLines or maxPages is < 1.
+     * */
+    public PagedFileIO(String url, int pageLines, int maxPages) {
+        this(url, Charset.defaultCharset(), pageLines, maxPages);
+    }
+
+    /**Constructor for PagedFileIO reading the file in the given charset.
+     * @param url the path to the file.
+     * @param charset the charset of the file, one where '\n' is never part
+     *                of another character (UTF-8, ASCII, ISO-8859-1...).
+     * @param pageLines how many lines make a page.
+     * @param maxPages how many pages may stay in memory.
+     * @throws IllegalArgumentException when pageLines or maxPages is < 1,
+     * or when the charset can't be split into pages.
+     * */
+    public PagedFileIO(String url, Charset charset, int pageLines, int maxPages) {
+        this.charset = charset;
+        if (pageLines < 1 || maxPages < 1)
+            throw new IllegalArgumentException("pageLines and maxPages must be at least 1");
+        if (!ParallelLineLoader.supports(charset))
+            throw new IllegalArgumentException("PagedFileIO can't split " + charset + " files into pages.");
+        this.file = new File(url);
+        this.pageLines = pageLines;
+        this.pages = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Integer, List<String>> eldest) {
+                return size() > maxPages;
+            }
+        };
+        fetch();
+    }
+
+    /**Scan the file for the page offsets and drop the cached pages.
+     * No line is kept in memory.
+     * */
+    public void fetch() {
+        pages.clear();
+        long[] starts = new long[16];
+        int count = 0;
+        int lines = 0;
+        long position = 0;
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            ByteBuffer buffer = ByteBuffer.allocate(64 * 1024);
+            long size = channel.size();
+            boolean open = false;
+            boolean afterReturn = false;
+            for (int read = channel.read(buffer, 0); read > 0; read = channel.read(buffer, position)) {
+                for (int i = 0; i < read; i++) {
+                    byte b = buffer.get(i);
+                    //"\r\n" is one line break, like a lone '\r' or '\n'
+                    if (afterReturn && b == '\n') {
+                        afterReturn = false;
+                        continue;
+                    }
+                    afterReturn = b == '\r';
+                    if (!open) {
+                        //a new line starts here
+                        if (lines % pageLines == 0) {
+                            if (count + 1 >= starts.length) starts = Arrays.copyOf(starts, starts.length * 2);
+                            starts[count++] = position + i;
+                        }
+                        open = true;
+                    }
+                    if (b == '\n' || b == '\r') {
+                        lines++;
+                        open = false;
+                    }
+                }
+                position += read;
+                buffer.clear();
+            }
+            if (open) lines++;
+            starts[count] = size;
+        } catch (IOException e) {
+            if (e instanceof NoSuchFileException) {
+                System.out.println("File not found.");
+            }
+            System.out.println(e.getMessage());
+            count = 0;
+            lines = 0;
+        }
+        pageStarts = starts;
+        pageCount = count;
+        lineCount = lines;
+    }
+
+    /**Return the line at the given position, reading its page from
+     * the file when it isn't in memory.
+     * */
+    @Override
+    public String get(int index) {
+        Objects.checkIndex(index, lineCount);
+        return page(index / pageLines).get(index % pageLines);
+    }
+
+    @Override
+    public int size() {
+        return lineCount;
+    }
+
+    /**Find the data in the file including the inputted string, going
+     * through the file page by page.
+     *
+     * @param value subString to be included
+     * @return an ArrayList of String containing the data included
+     * */
+    public ArrayList<String> findInclude(String value) {
+        ArrayList<String> result = new ArrayList<>();
+        String needle = value.toLowerCase();
+        for (int k = 0; k < pageCount; k++) {
+            for (String str : page(k)) {
+                if (str.toLowerCase().contains(needle)) {
+                    result.add(str);
+                }
+            }
+        }
+        return result;
+    }
+
+    /**Return how many page lookups were served from memory.
+     * */
+    public long getHits() {
+        return hits;
+    }
+
+    /**Return how many page lookups had to read the file.
+     * */
+    public long getMisses() {
+        return misses;
+    }
+
+    /**Return how many pages are in memory right now.
+     * */
+    public int getResidentPages() {
+        return pages.size();
+    }
+
+    /**Set the hit and miss counters back to 0.
+     * */
+    public void resetStats() {
+        hits = 0;
+        misses = 0;
+    }
+
+    private List<String> page(int k) {
+        List<String> page = pages.get(k);
+        if (page != null) {
+            hits++;
+            return page;
+        }
+        misses++;
+        page = readPage(k);
+        pages.put(k, page);
+        return page;
+    }
+
+    private List<String> readPage(int k) {
+        long start = pageStarts[k];
+        long length = pageStarts[k + 1] - start;
+        if (length > Integer.MAX_VALUE)
+            throw new IllegalStateException("Page " + k + " is larger than 2GB, use fewer lines per page.");
+        ByteBuffer buffer = ByteBuffer.allocate((int) length);
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            while (buffer.hasRemaining()) {
+                if (channel.read(buffer, start + buffer.position()) < 0) break;
+            }
+        } catch (IOException e) {
+            throw new IllegalStateException("Couldn't read page " + k + ": " + e.getMessage(), e);
+        }
+        buffer.flip();
+        return ParallelLineLoader.decodeLines(buffer, charset);
+    }
+}
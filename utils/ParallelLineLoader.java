@@ -0,0 +1,114 @@
+package utils;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+
+/**Loads the lines of a file on several threads. The file is cut
+ * into byte ranges ending on a line break, each range is decoded
+ * by its own task and the results are joined back in file order.
+ * */
+final class ParallelLineLoader {
+    private static final long MIN_CHUNK = 1 << 20;
+    private static final long MAX_CHUNK = 1 << 28;
+
+    private ParallelLineLoader() {
+    }
+
+    /**Return true when a '\n' byte can only ever be a line break in
+     * this charset, which is what cutting at byte offsets relies on: UTF-8,
+     * or a single byte charset writing "\n" as that byte (EBCDIC ones
+     * don't). Charsets that only decode are never supported.
+     * */
+    static boolean supports(Charset charset) {
+        if (charset.equals(StandardCharsets.UTF_8)) return true;
+        if (!charset.canEncode()) return false;
+        return charset.newEncoder().maxBytesPerChar() == 1
+                && Arrays.equals("\n".getBytes(charset), new byte[]{'\n'});
+    }
+
+    /**Decode every line of the file, each one ending with "\n" like
+     * FileIO stores them.
+     * @return the lines of every chunk, in file order.
+     * */
+    static List<List<String>> load(Path path, Charset charset, ForkJoinPool pool) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            long size = channel.size();
+            long[] bounds = split(channel, size, pool.getParallelism() * 4);
+
+            ArrayList<ForkJoinTask<List<String>>> tasks = new ArrayList<>();
+            for (int i = 0; i + 1 < bounds.length; i++) {
+                long start = bounds[i];
+                long end = bounds[i + 1];
+                MappedByteBuffer region = channel.map(FileChannel.MapMode.READ_ONLY, start, end - start);
+                tasks.add(pool.submit(() -> decodeLines(region, charset)));
+            }
+
+            ArrayList<List<String>> chunks = new ArrayList<>(tasks.size());
+            for (ForkJoinTask<List<String>> task : tasks) {
+                chunks.add(task.join());
+            }
+            return chunks;
+        }
+    }
+
+    //chunk boundaries, each one right after a line break
+    private static long[] split(FileChannel channel, long size, int parts) throws IOException {
+        long chunk = Math.min(MAX_CHUNK, Math.max(MIN_CHUNK, size / Math.max(1, parts)));
+        ArrayList<Long> bounds = new ArrayList<>();
+        bounds.add(0L);
+        ByteBuffer probe = ByteBuffer.allocate(4096);
+        long next = chunk;
+        while (next < size) {
+            long breakAt = -1;
+            long position = next;
+            while (breakAt < 0 && position < size) {
+                probe.clear();
+                int read = channel.read(probe, position);
+                if (read <= 0) break;
+                int found = LineBytes.nextLineBreak(probe, 0, read);
+                if (found >= 0) breakAt = position + found;
+                else position += read;
+            }
+            if (breakAt < 0 || breakAt + 1 >= size) break;
+            if (breakAt + 1 - bounds.get(bounds.size() - 1) > Integer.MAX_VALUE)
+                throw new IllegalStateException("A line is longer than " + Integer.MAX_VALUE + " bytes.");
+            bounds.add(breakAt + 1);
+            next = breakAt + 1 + chunk;
+        }
+        bounds.add(size);
+
+        long[] result = new long[bounds.size()];
+        for (int i = 0; i < result.length; i++) result[i] = bounds.get(i);
+        return result;
+    }
+
+    /**Decode the lines of the region, each one ending with "\n". Lines
+     * end on "\n", "\r\n" or a lone "\r" like with BufferedReader; the
+     * chunks are cut after a '\n', so a "\r\n" is never split.
+     * */
+    static List<String> decodeLines(ByteBuffer region, Charset charset) {
+        ArrayList<String> lines = new ArrayList<>();
+        byte[] line = new byte[256];
+        int limit = region.limit();
+        int position = 0;
+        while (position < limit) {
+            int end = LineBytes.nextTerminator(region, position, limit);
+            int next = end < 0 ? limit : LineBytes.skipTerminator(region, end, limit);
+            if (end < 0) end = limit;
+            line = LineBytes.decodeLine(region, position, end, line, charset, lines);
+            position = next;
+        }
+        return lines;
+    }
+}
@@ -0,0 +1,82 @@
+package utils;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+
+/**Describes the columns of a delimited record file, used by
+ * RecordTable to parse each line once.
+ * <p>
+ *     <i><b>Example: new RecordSchema(',').column("id", Type.TEXT)
+ *     .column("age", Type.LONG).key("id");</b></i>
+ * @author hatohui
+ * */
+public class RecordSchema {
+    /**The types a column can be parsed into.
+     * */
+    public enum Type { TEXT, LONG, DOUBLE }
+
+    private final char delimiter;
+    private final ArrayList<String> names = new ArrayList<>();
+    private final ArrayList<Type> types = new ArrayList<>();
+    private final HashMap<String, Integer> positions = new HashMap<>();
+    private int keyColumn = -1;
+
+    /**Constructor for RecordSchema.
+     * @param delimiter the character separating the columns of a line.
+     * */
+    public RecordSchema(char delimiter) {
+        this.delimiter = delimiter;
+    }
+
+    /**Add the next column of the record.
+     * @param name a unique name for the column.
+     * @param type what the column is parsed into.
+     * @throws IllegalArgumentException when the name is already used.
+     * */
+    public RecordSchema column(String name, Type type) {
+        if (positions.containsKey(name))
+            throw new IllegalArgumentException("Column " + name + " is already defined.");
+        positions.put(name, names.size());
+        names.add(name);
+        types.add(type);
+        return this;
+    }
+
+    /**Set the column used to look up records with RecordTable.find().
+     * @throws IllegalArgumentException when there's no such column.
+     * */
+    public RecordSchema key(String name) {
+        keyColumn = indexOf(name);
+        return this;
+    }
+
+    /**Return the position of the column.
+     * @throws IllegalArgumentException when there's no such column.
+     * */
+    public int indexOf(String name) {
+        Integer position = positions.get(name);
+        if (position == null)
+            throw new IllegalArgumentException("There's no column named " + name + ".");
+        return position;
+    }
+
+    public char getDelimiter() {
+        return delimiter;
+    }
+
+    public int getColumnCount() {
+        return names.size();
+    }
+
+    public String getName(int column) {
+        return names.get(column);
+    }
+
+    public Type getType(int column) {
+        return types.get(column);
+    }
+
+    public int getKeyColumn() {
+        return keyColumn;
+    }
+}
@@ -0,0 +1,250 @@
+package utils;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.function.DoublePredicate;
+import java.util.function.LongPredicate;
+import java.util.function.Predicate;
+
+/**Delimited records parsed once into columns. Numeric columns are
+ * kept in primitive arrays so filters and aggregations run over them
+ * without splitting or parsing the lines again.
+ * <p>
+ *     <i><b>Example: new RecordTable(schema, new FileIO("people.csv"))
+ *     .filterLong("age", age -> age > 30);</b></i>
+ * @author hatohui
+ * */
+public class RecordTable {
+    private final RecordSchema schema;
+    private final Object[] columns;
+    private final HashMap<String, Integer> keys = new HashMap<>();
+    private int rows;
+
+    /**Parse every line into the columns of the schema. Blank lines are
+     * skipped, a trailing line break is ignored.
+     * @param schema the layout of each line.
+     * @param lines the lines to parse, e.g. a FileIO.
+     * @throws IllegalArgumentException when a line doesn't match the schema.
+     * */
+    public RecordTable(RecordSchema schema, List<String> lines) {
+        this.schema = schema;
+        if (schema.getKeyColumn() >= 0 && schema.getType(schema.getKeyColumn()) != RecordSchema.Type.TEXT)
+            throw new IllegalArgumentException("The key column must be of type TEXT.");
+        int capacity = lines.size();
+        columns = new Object[schema.getColumnCount()];
+        for (int c = 0; c < columns.length; c++) {
+            switch (schema.getType(c)) {
+                case LONG -> columns[c] = new long[capacity];
+                case DOUBLE -> columns[c] = new double[capacity];
+                default -> columns[c] = new String[capacity];
+            }
+        }
+
+        int[] bounds = new int[columns.length + 1];
+        int number = 0;
+        for (String line : lines) {
+            number++;
+            if (line == null || line.isBlank()) continue;
+            int end = line.length();
+            while (end > 0 && (line.charAt(end - 1) == '\n' || line.charAt(end - 1) == '\r')) end--;
+            split(line, end, bounds, number);
+            parse(line, bounds, number);
+            rows++;
+        }
+    }
+
+    /**Return the number of records.
+     * */
+    public int size() {
+        return rows;
+    }
+
+    /**Return the row of the record with the given key, or -1.
+     * @throws IllegalStateException when the schema has no key column.
+     * */
+    public int find(String key) {
+        if (schema.getKeyColumn() < 0)
+            throw new IllegalStateException("The schema has no key column.");
+        return keys.getOrDefault(key, -1);
+    }
+
+    public String getText(int row, String column) {
+        return textColumn(column)[checkRow(row)];
+    }
+
+    public long getLong(int row, String column) {
+        return longColumn(column)[checkRow(row)];
+    }
+
+    public double getDouble(int row, String column) {
+        return doubleColumn(column)[checkRow(row)];
+    }
+
+    /**Return the rows whose LONG column matches the predicate.
+     * */
+    public int[] filterLong(String column, LongPredicate predicate) {
+        long[] values = longColumn(column);
+        int[] result = new int[rows];
+        int count = 0;
+        for (int row = 0; row < rows; row++) {
+            if (predicate.test(values[row])) result[count++] = row;
+        }
+        return Arrays.copyOf(result, count);
+    }
+
+    /**Return the rows whose DOUBLE column matches the predicate.
+     * */
+    public int[] filterDouble(String column, DoublePredicate predicate) {
+        double[] values = doubleColumn(column);
+        int[] result = new int[rows];
+        int count = 0;
+        for (int row = 0; row < rows; row++) {
+            if (predicate.test(values[row])) result[count++] = row;
+        }
+        return Arrays.copyOf(result, count);
+    }
+
+    /**Return the rows whose TEXT column matches the predicate.
+     * */
+    public int[] filterText(String column, Predicate<String> predicate) {
+        String[] values = textColumn(column);
+        int[] result = new int[rows];
+        int count = 0;
+        for (int row = 0; row < rows; row++) {
+            if (predicate.test(values[row])) result[count++] = row;
+        }
+        return Arrays.copyOf(result, count);
+    }
+
+    /**Return the sum of a LONG or DOUBLE column.
+     * */
+    public double sum(String column) {
+        double total = 0;
+        Object values = numericColumn(column);
+        if (values instanceof long[] longs) {
+            for (int row = 0; row < rows; row++) total += longs[row];
+        } else {
+            double[] doubles = (double[]) values;
+            for (int row = 0; row < rows; row++) total += doubles[row];
+        }
+        return total;
+    }
+
+    /**Return the average of a LONG or DOUBLE column, NaN when empty.
+     * */
+    public double average(String column) {
+        return rows == 0 ? Double.NaN : sum(column) / rows;
+    }
+
+    /**Return the smallest value of a LONG or DOUBLE column, NaN when empty.
+     * */
+    public double min(String column) {
+        if (rows == 0) return Double.NaN;
+        Object values = numericColumn(column);
+        if (values instanceof long[] longs) {
+            long min = longs[0];
+            for (int row = 1; row < rows; row++) {
+                if (longs[row] < min) min = longs[row];
+            }
+            return min;
+        }
+        double[] doubles = (double[]) values;
+        double min = doubles[0];
+        for (int row = 1; row < rows; row++) {
+            if (doubles[row] < min) min = doubles[row];
+        }
+        return min;
+    }
+
+    /**Return the largest value of a LONG or DOUBLE column, NaN when empty.
+     * */
+    public double max(String column) {
+        if (rows == 0) return Double.NaN;
+        Object values = numericColumn(column);
+        if (values instanceof long[] longs) {
+            long max = longs[0];
+            for (int row = 1; row < rows; row++) {
+                if (longs[row] > max) max = longs[row];
+            }
+            return max;
+        }
+        double[] doubles = (double[]) values;
+        double max = doubles[0];
+        for (int row = 1; row < rows; row++) {
+            if (doubles[row] > max) max = doubles[row];
+        }
+        return max;
+    }
+
+    //bounds[c] is where column c starts, bounds[c + 1] - 1 is where it ends
+    private void split(String line, int end, int[] bounds, int number) {
+        char delimiter = schema.getDelimiter();
+        int column = 0;
+        bounds[0] = 0;
+        for (int i = 0; i < end; i++) {
+            if (line.charAt(i) != delimiter) continue;
+            if (++column >= columns.length) break;
+            bounds[column] = i + 1;
+        }
+        if (column != columns.length - 1)
+            throw new IllegalArgumentException("Line " + number + " has " + (column + 1)
+                    + " columns, expected " + columns.length + ".");
+        bounds[columns.length] = end + 1;
+    }
+
+    private void parse(String line, int[] bounds, int number) {
+        for (int c = 0; c < columns.length; c++) {
+            int from = bounds[c];
+            int to = bounds[c + 1] - 1;
+            if (schema.getType(c) != RecordSchema.Type.TEXT) {
+                while (from < to && Character.isWhitespace(line.charAt(from))) from++;
+                while (to > from && Character.isWhitespace(line.charAt(to - 1))) to--;
+            }
+            try {
+                switch (schema.getType(c)) {
+                    case LONG -> ((long[]) columns[c])[rows] = Long.parseLong(line, from, to, 10);
+                    case DOUBLE -> ((double[]) columns[c])[rows] = Double.parseDouble(line.substring(from, to));
+                    default -> ((String[]) columns[c])[rows] = line.substring(from, to);
+                }
+            } catch (NumberFormatException e) {
+                throw new IllegalArgumentException("Line " + number + ", column "
+                        + schema.getName(c) + " is not a number: " + line.substring(from, to));
+            }
+        }
+        if (schema.getKeyColumn() >= 0)
+            keys.putIfAbsent(((String[]) columns[schema.getKeyColumn()])[rows], rows);
+    }
+
+    private int checkRow(int row) {
+        if (row < 0 || row >= rows)
+            throw new IndexOutOfBoundsException("Row " + row + " is out of " + rows + " rows.");
+        return row;
+    }
+
+    private Object numericColumn(String column) {
+        Object values = columns[schema.indexOf(column)];
+        if (values instanceof String[])
+            throw new IllegalArgumentException("Column " + column + " is not numeric.");
+        return values;
+    }
+
+    private String[] textColumn(String column) {
+        return (String[]) typed(column, RecordSchema.Type.TEXT);
+    }
+
+    private long[] longColumn(String column) {
+        return (long[]) typed(column, RecordSchema.Type.LONG);
+    }
+
+    private double[] doubleColumn(String column) {
+        return (double[]) typed(column, RecordSchema.Type.DOUBLE);
+    }
+
+    private Object typed(String column, RecordSchema.Type type) {
+        int position = schema.indexOf(column);
+        if (schema.getType(position) != type)
+            throw new IllegalArgumentException("Column " + column + " is not of type " + type + ".");
+        return columns[position];
+    }
+}
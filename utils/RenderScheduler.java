@@ -0,0 +1,110 @@
+package utils;
+
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.locks.LockSupport;
+
+/**Deploys UIs published from any thread on one render thread, at
+ * most a given number of times per second.
+ * <p>publish() only swaps the latest UI into an AtomicReference and
+ * wakes the render thread, it never waits on the console. UIs published
+ * between two frames replace each other, only the latest one is drawn,
+ * so frames are never torn or interleaved and the console isn't written
+ * faster than it can be read. Frames are drawn with UserInterface.update(),
+ * only the lines that changed being printed.
+ * @author hatohui
+ * */
+public class RenderScheduler implements AutoCloseable {
+    private final AtomicReference<String> pending = new AtomicReference<>();
+    private final UserInterface screen = new UserInterface();
+    private final long frameNanos;
+    private final Thread renderer;
+    private volatile boolean running = true;
+    private volatile long frames;
+
+    /**Constructor for RenderScheduler, drawing at most 30 frames per second.
+     * */
+    public RenderScheduler() {
+        this(30);
+    }
+
+    /**Constructor for RenderScheduler, starts the render thread.
+     * @param fps the most frames drawn per second.
+     * @throws IllegalArgumentException when fps is < 1 or > 1000.
+     * */
+    public RenderScheduler(int fps) {
+        if (fps < 1 || fps > 1000)
+            throw new IllegalArgumentException("fps must be >= 1 and <= 1000");
+        frameNanos = 1_000_000_000L / fps;
+        renderer = new Thread(this::renderLoop, "UI-render");
+        renderer.setDaemon(true);
+        renderer.start();
+    }
+
+    /**Publish the UI to be drawn on the next frame, see publish(String).
+     * */
+    public void publish(UserInterface UI) {
+        publish(UI.getUI());
+    }
+
+    /**Publish the UI to be drawn on the next frame, replacing any UI
+     * published since the last frame. Never blocks.
+     * @param UI a String that consists the UI.
+     * @throws IllegalStateException when the scheduler is closed.
+     * */
+    public void publish(String UI) {
+        if (!running)
+            throw new IllegalStateException("RenderScheduler is closed.");
+        pending.set(UI);
+        LockSupport.unpark(renderer);
+    }
+
+    /**Return how many frames were drawn so far.
+     * */
+    public long getFramesRendered() {
+        return frames;
+    }
+
+    /**Draw the UI still pending, if any, then stop the render thread.
+     * */
+    @Override
+    public void close() {
+        if (!running) return;
+        running = false;
+        LockSupport.unpark(renderer);
+        try {
+            renderer.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void renderLoop() {
+        long next = System.nanoTime();
+        while (running) {
+            if (pending.get() == null) {
+                LockSupport.park(this);
+                continue;
+            }
+            long wait = next - System.nanoTime();
+            if (wait > 0) {
+                LockSupport.parkNanos(this, wait);
+                continue;
+            }
+            render();
+            next = System.nanoTime() + frameNanos;
+        }
+        render();
+    }
+
+    private void render() {
+        String UI = pending.getAndSet(null);
+        if (UI == null) return;
+        try {
+            screen.setUI(UI);
+            screen.update();
+            frames++;
+        } catch (RuntimeException e) {
+            System.out.println(e.getMessage());
+        }
+    }
+}
@@ -0,0 +1,161 @@
+package utils;
+
+import java.util.*;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.function.Function;
+
+/**A FileIO spread over several files, which may sit on different disks.
+ * <p>Every line goes to the shard picked by the hash of its normalized
+ * value (ignoring case and surrounding whitespace), so removing a value
+ * only touches the shard holding it. fetch(), commit() and findInclude()
+ * run on all shards in parallel. The list view is the shards' lines one
+ * shard after the other, so the order of lines across shards is not the
+ * order they were appended in.
+ * @author hatohui
+ * */
+public class ShardedFileIO extends AbstractList<String> implements AutoCloseable {
+    private final FileIO[] shards;
+    private final ForkJoinPool pool;
+
+    /**Constructor for ShardedFileIO, working on the common ForkJoinPool.
+     * @param urls the path to every shard file, always in the same order.
+     * */
+    public ShardedFileIO(String... urls) {
+        this(ForkJoinPool.commonPool(), urls);
+    }
+
+    /**Constructor for ShardedFileIO. The shards are loaded in parallel.
+     * @param pool the pool running the work on the shards.
+     * @param urls the path to every shard file, always in the same order
+     *             since a line's shard depends on the number of shards and
+     *             its position.
+     * @throws IllegalArgumentException when no url is given.
+     * */
+    public ShardedFileIO(ForkJoinPool pool, String... urls) {
+        if (urls.length == 0)
+            throw new IllegalArgumentException("ShardedFileIO needs at least one file.");
+        this.pool = pool;
+        this.shards = new FileIO[urls.length];
+        List<FileIO> loaded = fanOut(Arrays.asList(urls), FileIO::new);
+        for (int i = 0; i < shards.length; i++) shards[i] = loaded.get(i);
+    }
+
+    /**Get data from every shard file, dropping changes not yet committed.
+     * */
+    public void fetch() {
+        fanOut(Arrays.asList(shards), shard -> {
+            shard.fetch();
+            return shard;
+        });
+    }
+
+    /**Saves every shard into its file, each one the way FileIO.commit() does.
+     * @return true when every shard was saved.
+     * */
+    public boolean commit() {
+        boolean saved = true;
+        for (boolean result : fanOut(Arrays.asList(shards), FileIO::commit)) saved &= result;
+        return saved;
+    }
+
+    /**Find the data in all shards including the inputted string.
+     *
+     * @param value subString to be included
+     * @return an ArrayList of String containing the data included, shard by shard
+     * */
+    public ArrayList<String> findInclude(String value) {
+        ArrayList<String> result = new ArrayList<>();
+        for (List<String> found : fanOut(Arrays.asList(shards), shard -> shard.findInclude(value))) {
+            result.addAll(found);
+        }
+        return result;
+    }
+
+    /**Append a String into the state of its shard (Remember to commit to save the data)
+     * */
+    public void append(String str) {
+        shardOf(str).append(str);
+    }
+
+    /**Append every String of the collection, handing each shard its
+     * part in one FileIO.appendAll() call.
+     * */
+    public void appendAll(Collection<String> values) {
+        ArrayList<ArrayList<String>> parts = new ArrayList<>(shards.length);
+        for (int i = 0; i < shards.length; i++) parts.add(new ArrayList<>());
+        for (String str : values) parts.get(shardIndex(str)).add(str);
+        for (int i = 0; i < shards.length; i++) {
+            if (!parts.get(i).isEmpty()) shards[i].appendAll(parts.get(i));
+        }
+    }
+
+    /**Remove the line containing the data from the state of its shard.
+     * */
+    public boolean removeFirstInState(String value) {
+        return shardOf(value).removeFirstInState(value);
+    }
+
+    /**Return how many shards the data is spread over.
+     * */
+    public int shardCount() {
+        return shards.length;
+    }
+
+    @Override
+    public String get(int index) {
+        Objects.checkIndex(index, size());
+        for (FileIO shard : shards) {
+            List<String> lines = shard.lines();
+            if (index < lines.size()) return lines.get(index);
+            index -= lines.size();
+        }
+        throw new IllegalStateException("unreachable");
+    }
+
+    @Override
+    public int size() {
+        int size = 0;
+        for (FileIO shard : shards) size += shard.lines().size();
+        return size;
+    }
+
+    /**Iterate over the shards one after the other.
+     * */
+    @Override
+    public Iterator<String> iterator() {
+        return Arrays.stream(shards).flatMap(shard -> shard.lines().stream()).iterator();
+    }
+
+    /**Close every shard, see FileIO.close().
+     * */
+    @Override
+    public void close() {
+        for (FileIO shard : shards) shard.close();
+    }
+
+    /**For printing stuffs
+     * */
+    @Override
+    public String toString() {
+        return String.join("", this);
+    }
+
+    private FileIO shardOf(String value) {
+        return shards[shardIndex(value)];
+    }
+
+    private int shardIndex(String value) {
+        return Math.floorMod(FileIO.fold(value.strip()).hashCode(), shards.length);
+    }
+
+    //runs the work on every item in parallel, results in item order
+    private <T, R> List<R> fanOut(List<T> items, Function<T, R> work) {
+        if (items.size() == 1) return List.of(work.apply(items.get(0)));
+        ArrayList<ForkJoinTask<R>> tasks = new ArrayList<>(items.size());
+        for (T item : items) tasks.add(pool.submit(() -> work.apply(item)));
+        ArrayList<R> results = new ArrayList<>(items.size());
+        for (ForkJoinTask<R> task : tasks) results.add(task.join());
+        return results;
+    }
+}
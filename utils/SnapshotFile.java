@@ -0,0 +1,124 @@
+package utils;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.zip.CRC32;
+import java.util.zip.CheckedOutputStream;
+
+/**A binary copy of a FileIO state, loaded with one mapped read
+ * instead of decoding the text file line by line.
+ * <p>Layout: [magic][version][source mtime][source length][line count]
+ * [has index][charset name][codec name], then [length][UTF-8 bytes] per
+ * line (each ending with "\n"), the trigram index when present, and a
+ * CRC32 of everything before it. The snapshot is only used while the
+ * source file still has the recorded modification time and length, and
+ * is read with the same charset and codec it was written for.
+ * */
+final class SnapshotFile {
+    private static final int MAGIC = 0x46494F53;
+    private static final int VERSION = 2;
+    private static final int HEADER = 4 + 4 + 8 + 8 + 4 + 1;
+
+    private SnapshotFile() {
+    }
+
+    /**Write the snapshot of the lines next to the source, replacing
+     * any previous one atomically.
+     * @param index the trigram index to store too, or null.
+     * @param codec the name of the codec of the source, empty for plain text.
+     * */
+    static void write(Path snapshot, Path source, List<String> lines, TrigramIndex index,
+                      Charset charset, String codec) throws IOException {
+        Path target = snapshot.toAbsolutePath();
+        Path temp = FileIO.createTemp(target);
+        try {
+            CRC32 crc = new CRC32();
+            try (FileOutputStream stream = new FileOutputStream(temp.toFile())) {
+                DataOutputStream out = new DataOutputStream(new BufferedOutputStream(
+                        new CheckedOutputStream(stream, crc)));
+                out.writeInt(MAGIC);
+                out.writeInt(VERSION);
+                out.writeLong(Files.getLastModifiedTime(source).toMillis());
+                out.writeLong(Files.size(source));
+                out.writeInt(lines.size());
+                out.writeBoolean(index != null);
+                out.writeUTF(charset.name());
+                out.writeUTF(codec);
+                for (String line : lines) {
+                    byte[] bytes = line.getBytes(StandardCharsets.UTF_8);
+                    out.writeInt(bytes.length);
+                    out.write(bytes);
+                }
+                if (index != null) index.write(out);
+                out.flush();
+                //the checksum itself is written past the checked stream
+                new DataOutputStream(stream).writeInt((int) crc.getValue());
+                stream.getFD().sync();
+            }
+            FileIO.moveInto(temp, target);
+        } finally {
+            Files.deleteIfExists(temp);
+        }
+    }
+
+    /**Read a snapshot back.
+     * @return the content, or null when the snapshot is missing, corrupt,
+     * older than the source file or written for another charset or codec.
+     * */
+    static Content read(Path snapshot, Path source, Charset charset, String codec) throws IOException {
+        if (!Files.exists(snapshot) || !Files.exists(source)) return null;
+        try (FileChannel channel = FileChannel.open(snapshot, StandardOpenOption.READ)) {
+            long size = channel.size();
+            if (size < HEADER + 4 || size > Integer.MAX_VALUE) return null;
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+
+            if (buffer.getInt(0) != MAGIC || buffer.getInt(4) != VERSION) return null;
+            if (buffer.getLong(8) != Files.getLastModifiedTime(source).toMillis()
+                    || buffer.getLong(16) != Files.size(source)) return null;
+            CRC32 crc = new CRC32();
+            crc.update(buffer.slice(0, (int) size - 4));
+            if ((int) crc.getValue() != buffer.getInt((int) size - 4)) return null;
+
+            int count = buffer.getInt(24);
+            boolean hasIndex = buffer.get(28) != 0;
+            buffer.position(HEADER);
+            if (!readName(buffer).equals(charset.name()) || !readName(buffer).equals(codec)) return null;
+            ArrayList<String> lines = new ArrayList<>(count);
+            byte[] bytes = new byte[256];
+            for (int i = 0; i < count; i++) {
+                int length = buffer.getInt();
+                if (length > bytes.length) bytes = new byte[Math.max(length, bytes.length * 2)];
+                buffer.get(bytes, 0, length);
+                lines.add(new String(bytes, 0, length, StandardCharsets.UTF_8));
+            }
+            TrigramIndex index = hasIndex ? TrigramIndex.read(buffer) : null;
+            return new Content(lines, index);
+        }
+    }
+
+    //reads back a name written by DataOutput.writeUTF(), names of charsets and codecs are plain ASCII
+    private static String readName(ByteBuffer buffer) {
+        byte[] bytes = new byte[buffer.getShort() & 0xFFFF];
+        buffer.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    static final class Content {
+        final ArrayList<String> lines;
+        final TrigramIndex index;
+
+        private Content(ArrayList<String> lines, TrigramIndex index) {
+            this.lines = lines;
+            this.index = index;
+        }
+    }
+}
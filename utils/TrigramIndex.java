@@ -0,0 +1,122 @@
+package utils;
+
+import java.io.DataOutput;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+/**An inverted index from every run of three characters to the
+ * lines containing it. Line numbers are added in increasing order
+ * so every posting list stays sorted.
+ * */
+final class TrigramIndex {
+    private static final int[] NONE = new int[0];
+    private final HashMap<Long, Postings> postings = new HashMap<>();
+
+    /**Index the given (already case-folded) line under its number.
+     * */
+    void add(int line, String folded) {
+        for (int i = 0; i + 3 <= folded.length(); i++) {
+            postings.computeIfAbsent(key(folded, i), k -> new Postings()).add(line);
+        }
+    }
+
+    /**Return the sorted line numbers that contain every trigram of
+     * the needle. The lines still need to be checked for the needle itself.
+     * @param needle a case-folded String of at least three characters.
+     * */
+    int[] candidates(String needle) {
+        Postings[] lists = new Postings[needle.length() - 2];
+        for (int i = 0; i < lists.length; i++) {
+            lists[i] = postings.get(key(needle, i));
+            if (lists[i] == null) return NONE;
+        }
+        Arrays.sort(lists, (a, b) -> Integer.compare(a.size, b.size));
+
+        int[] result = Arrays.copyOf(lists[0].lines, lists[0].size);
+        int count = result.length;
+        for (int i = 1; i < lists.length && count > 0; i++) {
+            count = intersect(result, count, lists[i]);
+        }
+        return Arrays.copyOf(result, count);
+    }
+
+    void clear() {
+        postings.clear();
+    }
+
+    /**Move every line number to moved[line], dropping the lines moved
+     * to -1. The order of the lines has to be kept, so the posting lists
+     * stay sorted.
+     * */
+    void remap(int[] moved) {
+        postings.values().removeIf(list -> list.remap(moved) == 0);
+    }
+
+    /**Write the posting lists as [count] then [key, size, lines...] per trigram.
+     * */
+    void write(DataOutput out) throws IOException {
+        out.writeInt(postings.size());
+        for (Map.Entry<Long, Postings> entry : postings.entrySet()) {
+            Postings list = entry.getValue();
+            out.writeLong(entry.getKey());
+            out.writeInt(list.size);
+            for (int i = 0; i < list.size; i++) out.writeInt(list.lines[i]);
+        }
+    }
+
+    /**Read back an index written by write(), the buffer is left after it.
+     * */
+    static TrigramIndex read(ByteBuffer in) {
+        TrigramIndex index = new TrigramIndex();
+        int count = in.getInt();
+        for (int i = 0; i < count; i++) {
+            long key = in.getLong();
+            Postings list = new Postings();
+            list.size = in.getInt();
+            list.lines = new int[Math.max(1, list.size)];
+            in.asIntBuffer().get(list.lines, 0, list.size);
+            in.position(in.position() + list.size * 4);
+            index.postings.put(key, list);
+        }
+        return index;
+    }
+
+    //keeps the values of result[0, count) also found in other, returns the new count
+    private static int intersect(int[] result, int count, Postings other) {
+        int kept = 0;
+        int j = 0;
+        for (int i = 0; i < count && j < other.size; i++) {
+            while (j < other.size && other.lines[j] < result[i]) j++;
+            if (j < other.size && other.lines[j] == result[i]) result[kept++] = result[i];
+        }
+        return kept;
+    }
+
+    private static long key(String text, int at) {
+        return ((long) text.charAt(at) << 32) | ((long) text.charAt(at + 1) << 16) | text.charAt(at + 2);
+    }
+
+    private static final class Postings {
+        private int[] lines = new int[4];
+        private int size;
+
+        private void add(int line) {
+            //a trigram repeated on the same line is only recorded once
+            if (size > 0 && lines[size - 1] == line) return;
+            if (size == lines.length) lines = Arrays.copyOf(lines, size * 2);
+            lines[size++] = line;
+        }
+
+        private int remap(int[] moved) {
+            int kept = 0;
+            for (int i = 0; i < size; i++) {
+                if (moved[lines[i]] >= 0) lines[kept++] = moved[lines[i]];
+            }
+            size = kept;
+            return kept;
+        }
+    }
+}
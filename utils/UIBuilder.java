@@ -1,6 +1,9 @@
 package utils;
 
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.NoSuchElementException;
+import java.util.function.Consumer;
 
 /**A tool for building UI at your convenience.
  * @author hatohui
@@ -10,10 +13,12 @@ public class UIBuilder {
     private final UIComponents Compo = new UIComponents();
     private final ColorWrapper Color = new ColorWrapper();
     private UserInterface UI;
-    private ArrayList<String> currentUI = new ArrayList<>();
-    private String emptyWall = "";
-    private String topWall = "";
-    private String bottomWall = "";
+    //every component is written into one buffer, starts[i] being where component i begins
+    private final StringBuilder currentUI = new StringBuilder(1024);
+    private int[] starts = new int[16];
+    //how component i aligns its text, null for walls and loaded lines, for compile()
+    private UITemplate.Align[] aligns = new UITemplate.Align[16];
+    private int components;
 
     /**Default constructor which create a
      * new empty UserInterface by default.
@@ -40,23 +45,19 @@ public class UIBuilder {
      * @param name a String to be displayed.
      * */
     public UIBuilder header(String name) {
-        currentUI.add(Compo.header(name) + "\n");
-        return this;
+        return add(sink -> Compo.header(sink, name), UITemplate.Align.CENTER);
     }
 
     /**Add the top wall (ceiling) for your UI.
      * */
     public UIBuilder topWall() {
-        if (topWall.isEmpty()) topWall = Compo.topWall() + "\n";
-        currentUI.add(topWall);
-        return this;
+        return add(Compo::topWall);
     }
 
     /**Add a separator line to your UI.
      * */
     public UIBuilder separator() {
-        currentUI.add(Compo.separator() + "\n");
-        return this;
+        return add(sink -> Compo.separator(sink, UIComponents.getDefaultMaterial()));
     }
 
     /**Add a separator line to your UI made of given
@@ -64,27 +65,20 @@ public class UIBuilder {
      * @param material a char symbol constructing the separator.
      * */
     public UIBuilder separator(Character material) {
-        currentUI.add(Compo.separator(material) + "\n");
-        return this;
+        return add(sink -> Compo.separator(sink, material));
     }
 
     /**Add the bottom wall String (floor) to your UI.
      * */
     public UIBuilder bottomWall() {
-        if (bottomWall.isEmpty())
-            bottomWall = Compo.bottomWall() + "\n";
-
-        currentUI.add(bottomWall);
-        return this;
+        return add(Compo::bottomWall);
     }
 
     /**Add an empty space with two walls on the side to
      * your UI.
      * */
     public UIBuilder emptyWall() {
-        if (emptyWall.isEmpty()) emptyWall =  Compo.emptyWall() + "\n";
-        currentUI.add(emptyWall);
-        return this;
+        return add(Compo::emptyWall);
     }
 
     /**Add a certain amount of options to your UI for display.
@@ -93,8 +87,7 @@ public class UIBuilder {
      *                printed.
      * */
     public UIBuilder options(String[] options) {
-        currentUI.add(Compo.options(options) + "\n");
-        return this;
+        return add(sink -> Compo.options(sink, options), UITemplate.Align.LEFT);
     }
 
     /**Add an option bar using a custom button text and the description
@@ -103,8 +96,7 @@ public class UIBuilder {
      * @param optionText a String to what the option is for
      * */
     public UIBuilder option(String buttonText, String optionText) {
-        currentUI.add(Compo.option(buttonText, optionText) + "\n");
-        return this;
+        return add(sink -> Compo.option(sink, buttonText, optionText), UITemplate.Align.LEFT);
     }
 
     /**Add a block displaying the given text to the UI. The
@@ -114,8 +106,7 @@ public class UIBuilder {
      * @param text a String to display.
      * */
     public UIBuilder description(String text, int padding) {
-        currentUI.add(Compo.description(text, padding) + "\n");
-        return this;
+        return add(sink -> Compo.description(sink, text, padding), UITemplate.Align.LEFT);
     }
 
     /**Add a String to be displayed along with a text
@@ -126,8 +117,7 @@ public class UIBuilder {
      *                left wall to its content.
      * */
     public UIBuilder leftString(String text, int padding) {
-        currentUI.add(Compo.leftString(text, padding) + "\n");
-        return this;
+        return add(sink -> Compo.leftString(sink, text, padding), UITemplate.Align.LEFT);
     }
 
     /**Add a String to be displayed along with a text
@@ -138,8 +128,7 @@ public class UIBuilder {
      *                right wall to its content.
      * */
     public UIBuilder rightString(String text, int padding) {
-        currentUI.add(Compo.rightString(text, padding) + "\n");
-        return this;
+        return add(sink -> Compo.rightString(sink, text, padding), UITemplate.Align.RIGHT);
     }
 
     //FUNCTIONALITY
@@ -148,7 +137,7 @@ public class UIBuilder {
      */
     public void reset() {
         UI = new UserInterface();
-        currentUI.clear();
+        clear();
     }
 
     /**Return the UserInterface Object containing data of your
@@ -158,9 +147,9 @@ public class UIBuilder {
      * */
     public UserInterface saveAndReset() {
         UserInterface value = new UserInterface();
-        value.setUI(String.join("",currentUI));
+        value.setUI(currentUI.toString());
         UI = new UserInterface();
-        currentUI.clear();
+        clear();
         return value;
     }
 
@@ -169,8 +158,8 @@ public class UIBuilder {
      * to access or restore the data use load()
      * */
     public UIBuilder save() {
-        UI.setUI(String.join("",currentUI));
-        currentUI.clear();
+        UI.setUI(currentUI.toString());
+        clear();
         return this;
     }
 
@@ -180,7 +169,7 @@ public class UIBuilder {
     public UIBuilder load() {
         String[] values = UI.getUI().split("\n");
         for (String value: values) {
-            currentUI.add(value + "\n");
+            addComponent(value + "\n");
         }
         return this;
     }
@@ -189,14 +178,35 @@ public class UIBuilder {
      * @return UserInterface object
      * */
     public UserInterface saveAndReturn() {
-        UI.setUI(String.join("",currentUI));
+        UI.setUI(currentUI.toString());
         return UI;
     }
     /**Save the UI as a String and return it.
      * @return a String
      * */
     public String saveToString() {
-        return String.join("", currentUI);
+        return currentUI.toString();
+    }
+
+    /**Write the UI into the given StringBuilder without making
+     * a String of it, e.g. to reuse one buffer for every frame.
+     * @param sink the StringBuilder the UI is appended to.
+     * @return the sink
+     * */
+    public StringBuilder saveTo(StringBuilder sink) {
+        return sink.append(currentUI);
+    }
+
+    /**Compile the UI into a template whose {name} slots can be
+     * filled again and again without building the UI each time.
+     * Each slot is aligned like the component it was written in, so
+     * a value lands where header(), leftString() or rightString()
+     * would have put it.
+     * @return an UITemplate object
+     * @throws IllegalArgumentException when the UI has no {slot}.
+     * */
+    public UITemplate compile() {
+        return UITemplate.compile(componentList(), Arrays.asList(aligns).subList(0, components));
     }
 
     /**Set the current UserInterface object that UIBuilder
@@ -211,7 +221,7 @@ public class UIBuilder {
      * object to the console. Used for debugging.
      * */
     public void build() {
-        System.out.print(currentUI);
+        System.out.print(componentList());
     }
 
     /**Adding color into your components sparing the border.
@@ -223,8 +233,7 @@ public class UIBuilder {
         String vertical = String.valueOf(UIComponents.getVertical());
         StringBuilder newString = new StringBuilder();
 
-        String[] parts = currentUI.getLast()
-                .split(vertical);
+        String[] parts = last().split(vertical);
 
         for (String part: parts) {
             if (part.length() <= 1) continue;
@@ -233,10 +242,7 @@ public class UIBuilder {
                 .append(vertical).append("\n");
         }
 
-        currentUI.removeLast();
-        currentUI.add(newString.toString());
-
-        return this;
+        return replaceLast(newString);
     }
 
     /**Adding color into your components sparing the border.
@@ -251,8 +257,7 @@ public class UIBuilder {
         String vertical = String.valueOf(UIComponents.getVertical());
         StringBuilder newString = new StringBuilder();
 
-        String[] parts = currentUI.getLast()
-                .split(vertical);
+        String[] parts = last().split(vertical);
 
         for (String part: parts) {
             if (part.length() <= 1) continue;
@@ -261,10 +266,7 @@ public class UIBuilder {
                     .append(vertical).append("\n");
         }
 
-        currentUI.removeLast();
-        currentUI.add(newString.toString());
-
-        return this;
+        return replaceLast(newString);
     }
 
     /**Adding color into your components including the border.
@@ -273,11 +275,9 @@ public class UIBuilder {
      *             ,WHITE.
      * */
     public UIBuilder withColorIncludingBorder(String color) {
-        String toAddColor = currentUI.getLast();
+        String toAddColor = last();
         toAddColor = Color.addColor(toAddColor, color);
-        currentUI.removeLast();
-        currentUI.add(toAddColor);
-        return this;
+        return replaceLast(toAddColor);
     }
 
     /**Adding color into your components including the border.
@@ -289,12 +289,10 @@ public class UIBuilder {
      *             ,WHITE.
      * */
     public UIBuilder withColorIncludingBorder(String color, String background) {
-        String toAddColor = currentUI.getLast();
+        String toAddColor = last();
         toAddColor = Color.addColor(toAddColor, color);
         toAddColor = Color.addBackgroundColor(toAddColor,color);
-        currentUI.removeLast();
-        currentUI.add(toAddColor);
-        return this;
+        return replaceLast(toAddColor);
     }
 
     /**Setting the default text color for the page.
@@ -302,14 +300,80 @@ public class UIBuilder {
      * */
     public UIBuilder setDefaultColor(String color) {
         ArrayList<String> newUI = new ArrayList<>();
-        for (String string: currentUI) {
+        for (String string: componentList()) {
             if (string.contains("\u001B[0m")) {
                 string = string.replace("\u001B[0m", "\u001B[0m" + ColorWrapper.getColor(color));
             }
             string = Color.addColor(string, color);
             newUI.add(string);
         }
-        currentUI = newUI;
+        UITemplate.Align[] kept = aligns.clone();
+        clear();
+        for (int i = 0; i < newUI.size(); i++) {
+            addComponent(newUI.get(i));
+            aligns[i] = kept[i];
+        }
+        return this;
+    }
+
+    private UIBuilder add(Consumer<StringBuilder> component) {
+        return add(component, null);
+    }
+
+    //writes a component straight into the buffer, dropping what it wrote if it fails
+    private UIBuilder add(Consumer<StringBuilder> component, UITemplate.Align align) {
+        int start = currentUI.length();
+        try {
+            component.accept(currentUI);
+        } catch (RuntimeException e) {
+            currentUI.setLength(start);
+            throw e;
+        }
+        currentUI.append('\n');
+        mark(start);
+        aligns[components - 1] = align;
         return this;
     }
+
+    private UIBuilder addComponent(CharSequence component) {
+        int start = currentUI.length();
+        currentUI.append(component);
+        return mark(start);
+    }
+
+    private UIBuilder mark(int start) {
+        if (components == starts.length) {
+            starts = Arrays.copyOf(starts, components * 2);
+            aligns = Arrays.copyOf(aligns, components * 2);
+        }
+        aligns[components] = null;
+        starts[components++] = start;
+        return this;
+    }
+
+    private String last() {
+        if (components == 0) throw new NoSuchElementException();
+        return currentUI.substring(starts[components - 1]);
+    }
+
+    private UIBuilder replaceLast(CharSequence component) {
+        currentUI.setLength(starts[components - 1]);
+        currentUI.append(component);
+        return this;
+    }
+
+    private ArrayList<String> componentList() {
+        ArrayList<String> list = new ArrayList<>(components);
+        for (int i = 0; i < components; i++) {
+            int end = i + 1 < components ? starts[i + 1] : currentUI.length();
+            list.add(currentUI.substring(starts[i], end));
+        }
+        return list;
+    }
+
+    //keeps the buffer's capacity for the next UI
+    private void clear() {
+        currentUI.setLength(0);
+        components = 0;
+    }
 }
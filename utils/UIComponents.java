@@ -1,6 +1,7 @@
 package utils;
 
-import java.util.stream.Stream;
+import java.util.concurrent.ConcurrentHashMap;
+
 
 /**
  * Consists of components for creating console app's UIs.
@@ -19,6 +20,13 @@ public class UIComponents {
     private static char bottomRight = '╝';
     private static char background = ' ';
     private int horizontalLength = 70;
+    //runs of each character, long enough for the widest UI, padding copies a prefix of them
+    private static final int MAX_RUN = 200;
+    private static final ConcurrentHashMap<Character, String> runs = new ConcurrentHashMap<>();
+    //walls already built, by width
+    private static final String[] topWalls = new String[MAX_RUN + 1];
+    private static final String[] bottomWalls = new String[MAX_RUN + 1];
+    private static final String[] emptyWalls = new String[MAX_RUN + 1];
 
     /**
      *Constructor for UIBuilder.
@@ -73,10 +81,8 @@ public class UIComponents {
 
             if (!message.isEmpty()) message += "\t";
 
-            //generates the stream
-            Stream.generate(() -> incompleteLoading)
-                    .limit(loadTime)
-                    .forEach(builder::append);
+            //the empty bar
+            appendRun(builder, incompleteLoading, loadTime);
 
             //loads
             for (int i = 0; i < loadTime; ++i) {
@@ -111,10 +117,8 @@ public class UIComponents {
 
             if (!message.isEmpty()) message += "\t";
 
-            //generates the stream
-            Stream.generate(() -> ' ')
-                    .limit(loadTime)
-                    .forEach(builder::append);
+            //the empty bar
+            appendRun(builder, ' ', loadTime);
 
             //loads
             double percentage = 0;
@@ -160,14 +164,22 @@ public class UIComponents {
      * @throws IllegalArgumentException when amount of material is <= 0.
      */
     public String separator(char material) {
-        StringBuilder builder = new StringBuilder();
+        return separator(new StringBuilder(horizontalLength), material).toString();
+    }
 
+    /**
+     * Write a separator made of given character in desired length
+     * into the sink.
+     *
+     * @param sink the StringBuilder to write into.
+     * @param material a character that the separator is made of.
+     * @return the sink
+     */
+    public StringBuilder separator(StringBuilder sink, char material) {
         //generate the separator
-        Stream.generate(() -> material)
-                .limit(horizontalLength)
-                .forEach(builder::append);
+        appendRun(sink, material, horizontalLength);
 
-        return builder.toString();
+        return sink;
     }
 
     /**
@@ -184,17 +196,22 @@ public class UIComponents {
      * @return a String.
      */
     public String topWall() {
-        StringBuilder topWall = new StringBuilder();
-
-        topWall.append(topLeft);
-
-        Stream.generate(() -> horizontal)
-                .limit(horizontalLength - 2)
-                .forEach(topWall::append);
-
-        topWall.append(topRight);
+        String wall = topWalls[horizontalLength];
+        if (wall == null) {
+            StringBuilder builder = new StringBuilder(horizontalLength).append(topLeft);
+            wall = appendRun(builder, horizontal, horizontalLength - 2).append(topRight).toString();
+            topWalls[horizontalLength] = wall;
+        }
+        return wall;
+    }
 
-        return topWall.toString();
+    /**
+     * Write the UIs ceiling into the sink.
+     * @param sink the StringBuilder to write into.
+     * @return the sink
+     */
+    public StringBuilder topWall(StringBuilder sink) {
+        return sink.append(topWall());
     }
 
     /**
@@ -202,17 +219,22 @@ public class UIComponents {
      * @return a String flooring for your UI.
      */
     public String bottomWall() {
-        StringBuilder bottomWall = new StringBuilder();
-
-        bottomWall.append(bottomLeft);
-
-        Stream.generate(() -> horizontal)
-                .limit(horizontalLength - 2)
-                .forEach(bottomWall::append);
-
-        bottomWall.append(bottomRight);
+        String wall = bottomWalls[horizontalLength];
+        if (wall == null) {
+            StringBuilder builder = new StringBuilder(horizontalLength).append(bottomLeft);
+            wall = appendRun(builder, horizontal, horizontalLength - 2).append(bottomRight).toString();
+            bottomWalls[horizontalLength] = wall;
+        }
+        return wall;
+    }
 
-        return bottomWall.toString();
+    /**
+     * Write the UIs floor into the sink.
+     * @param sink the StringBuilder to write into.
+     * @return the sink
+     */
+    public StringBuilder bottomWall(StringBuilder sink) {
+        return sink.append(bottomWall());
     }
 
     /**
@@ -220,15 +242,22 @@ public class UIComponents {
      * @return a String with two end walled.
      */
     public String emptyWall() {
-        StringBuilder emptyLine = new StringBuilder();
-
-        emptyLine.append(vertical);
-        Stream.generate(() -> background)
-                .limit(horizontalLength - 2)
-                .forEach(emptyLine::append);
-        emptyLine.append(vertical);
+        String wall = emptyWalls[horizontalLength];
+        if (wall == null) {
+            StringBuilder builder = new StringBuilder(horizontalLength).append(vertical);
+            wall = appendRun(builder, background, horizontalLength - 2).append(vertical).toString();
+            emptyWalls[horizontalLength] = wall;
+        }
+        return wall;
+    }
 
-        return emptyLine.toString();
+    /**
+     * Write a wall with two ends into the sink.
+     * @param sink the StringBuilder to write into.
+     * @return the sink
+     */
+    public StringBuilder emptyWall(StringBuilder sink) {
+        return sink.append(emptyWall());
     }
 
     /**
@@ -240,27 +269,33 @@ public class UIComponents {
      *                               to the default horizontal length.
      */
     public String header(String title) {
+        return header(new StringBuilder(horizontalLength), title).toString();
+    }
+
+    /**
+     * Write a Header with given title into the sink.
+     *
+     * @param sink the StringBuilder to write into.
+     * @param title a string that will be printed into the console.
+     * @return the sink
+     * @throws IllegalStateException when the title's length is too big compared
+     *                               to the default horizontal length.
+     */
+    public StringBuilder header(StringBuilder sink, String title) {
         int padding = (horizontalLength - 2 - title.length()) / 2;
 
         if (horizontalLength - 2 < title.length())
             throw new IllegalStateException("Title won't fit, title length is: "
                     + title.length() + " while we only have " + (horizontalLength - 2));
 
-        StringBuilder header = new StringBuilder();
-
-        header.append(vertical);
-        Stream.generate(() -> background)
-                .limit(padding)
-                .forEach(header::append);
-        header.append(title);
+        sink.append(vertical);
+        appendRun(sink, background, padding);
+        sink.append(title);
 
         if ((horizontalLength - title.length()) % 2 == 1) padding++;
-        Stream.generate(() -> background)
-                .limit(padding)
-                .forEach(header::append);
-        header.append(vertical);
+        appendRun(sink, background, padding);
 
-        return header.toString();
+        return sink.append(vertical);
     }
 
     /**
@@ -275,6 +310,22 @@ public class UIComponents {
      * @throws IllegalStateException when the text can't fit into the UI.
      */
     public String options(String[] options) {
+        return options(new StringBuilder(horizontalLength + 1), options).toString();
+    }
+
+    /**
+     * Write options wrapped by the walls within the UI into the sink,
+     * one line per option.
+     *
+     * @param sink the StringBuilder to write into.
+     * @param options a String array containing options
+     *                to be printed.
+     * @return the sink
+     * @throws IllegalArgumentException when options is empty or when
+     *                                  the passed argument is null.
+     * @throws IllegalStateException when the text can't fit into the UI.
+     */
+    public StringBuilder options(StringBuilder sink, String[] options) {
         //handle null
         if (options == null)
             throw new IllegalArgumentException("Passed argument is null.");
@@ -284,11 +335,9 @@ public class UIComponents {
             throw new IllegalArgumentException("Passed String array can't be empty.");
 
         int count = 1;
-        StringBuilder result = new StringBuilder();
 
         for (String option : options) {
             //initializes
-            StringBuilder string = new StringBuilder();
             String opt = "[" + count + "]";
 
             //handle not enough space
@@ -305,32 +354,26 @@ public class UIComponents {
 
             int pad = padding / 2;
             //building the string
-            string.append(vertical);
-            Stream.generate(() -> background)
-                    .limit(pad - 3)
-                    .forEach(string::append);
+            if (count > 1) sink.append("\n");
+            sink.append(vertical);
+            appendRun(sink, background, pad - 3);
 
-            string.append(opt);
+            sink.append(opt);
 
             if (!(padding % 2 == 0)) pad += 1;
 
-            Stream.generate(() -> background)
-                    .limit(pad)
-                    .forEach(string::append);
+            appendRun(sink, background, pad);
 
-            string.append(option);
+            sink.append(option);
 
             if ((horizontalLength - option.length()) % 2 == 1) padding++;
-            Stream.generate(() -> background)
-                    .limit(padding)
-                    .forEach(string::append);
-            string.append(vertical);
+            appendRun(sink, background, padding);
+            sink.append(vertical);
 
-            result.append("\n").append(string);
             count++;
         }
 
-        return result.deleteCharAt(0).toString();
+        return sink;
     }
 
     /**
@@ -347,6 +390,23 @@ public class UIComponents {
      * UI.
      */
     public String option(String buttonText, String optionText) {
+        return option(new StringBuilder(horizontalLength), buttonText, optionText).toString();
+    }
+
+    /**
+     * Write the option wrapped by the walls within the UI into the sink.
+     *
+     * @param sink the StringBuilder to write into.
+     * @param buttonText a String containing the text inside the button
+     * @param optionText a String containing option
+     *                to be printed.
+     * @return the sink
+     * @throws IllegalArgumentException when options is empty or when
+     *                                  the passed argument is null.
+     * @throws IllegalStateException when the text can't fit into the
+     * UI.
+     */
+    public StringBuilder option(StringBuilder sink, String buttonText, String optionText) {
         //handle null
         if (optionText == null)
             throw new IllegalArgumentException("Passed argument is null.");
@@ -356,7 +416,6 @@ public class UIComponents {
                     "the current box's size");
 
         //initializes
-        StringBuilder result = new StringBuilder();
         String button = "[" + buttonText + "]";
         int padding = (horizontalLength - 2 - optionText.length()) / 2;
         //check padding size;
@@ -367,24 +426,17 @@ public class UIComponents {
         if (pad - 2 <= buttonText.length()) throw new IllegalStateException("Passed buttonText" +
                 "too long for current length");
 
-        result.append(vertical);
-        Stream.generate(() -> background)
-                .limit(pad)
-                .forEach(result::append);
-        result.append(button);
+        sink.append(vertical);
+        appendRun(sink, background, pad);
+        sink.append(button);
         //fill in missing spots
         if (!(padding % 2 == 0)) pad += 1;
-        Stream.generate(() -> background)
-                .limit(pad - buttonText.length() - 2)
-                .forEach(result::append);
-        result.append(optionText);
+        appendRun(sink, background, pad - buttonText.length() - 2);
+        sink.append(optionText);
         if ((horizontalLength - optionText.length()) % 2 == 1) padding++;
-        Stream.generate(() -> background)
-                .limit(padding)
-                .forEach(result::append);
-        result.append(vertical);
+        appendRun(sink, background, padding);
 
-        return result.toString();
+        return sink.append(vertical);
     }
 
     /**Return a string within the UI containing the text
@@ -398,6 +450,20 @@ public class UIComponents {
      * @return a String containing the UI to be printed.
      * */
     public String description(String text, int padding) {
+        return description(new StringBuilder(horizontalLength), text, padding).toString();
+    }
+
+    /**Write the text within the UI into the sink, on as many lines
+     * as needed, see description(String, int).
+     * @param sink the StringBuilder to write into.
+     * @param text the String given to be printed
+     * @param padding an integer indicating the space left empty
+     *                on two sides.
+     * @throws IllegalArgumentException when the argument passed are null
+     * or empty
+     * @return the sink
+     * */
+    public StringBuilder description(StringBuilder sink, String text, int padding) {
         if (text.isEmpty())
             throw new IllegalArgumentException("Argument passed is empty or null, if you wanted" +
                     " an empty line use emptyWall");
@@ -406,14 +472,11 @@ public class UIComponents {
         int index = 0;
         int length = text.length();
 
-        StringBuilder string = new StringBuilder();
         int sizeOfText = horizontalLength - 2 - padding*2;
 
         do {
-            string.append(vertical);
-            Stream.generate(() -> background)
-                    .limit(padding)
-                    .forEach(string::append);
+            sink.append(vertical);
+            appendRun(sink, background, padding);
 
             String toPrint = "";
             while (true) {
@@ -425,17 +488,16 @@ public class UIComponents {
             }
 
             length -= toPrint.length();
-            string.append(toPrint);
+            sink.append(toPrint);
             int sup = sizeOfText - toPrint.length();
-            Stream.generate(()->background)
-                    .limit(padding+sup)
-                    .forEach(string::append);
-            string.append(vertical);
-            string.append("\n");
+            appendRun(sink, background, padding+sup);
+            sink.append(vertical);
+            sink.append("\n");
 
         } while (length > 0);
 
-        return string.substring(0, string.length()-1);
+        sink.setLength(sink.length() - 1);
+        return sink;
     }
 
     /**
@@ -448,6 +510,20 @@ public class UIComponents {
      * @throws IllegalStateException when the text cannot fit.
     */
     public String leftString(String text, int padding) {
+        return leftString(new StringBuilder(horizontalLength), text, padding).toString();
+    }
+
+    /**
+     * Write the given text on the left side padded with the given
+     * amount into the sink.
+     * @param sink - the StringBuilder to write into.
+     * @param text - the String given to be printed.
+     * @param padding - an integer indicating the padding
+     * @return the sink
+     * @throws IllegalArgumentException when argument passed is null.
+     * @throws IllegalStateException when the text cannot fit.
+     */
+    public StringBuilder leftString(StringBuilder sink, String text, int padding) {
         if (text.isEmpty())
             throw new IllegalArgumentException("Argument passed is null");
 
@@ -457,17 +533,11 @@ public class UIComponents {
         if (text.length() > horizontalLength - 2)
             throw new IllegalStateException("Text passed is too long.");
 
-        StringBuilder string = new StringBuilder();
-        string.append(vertical);
-        Stream.generate(() -> background)
-                .limit(padding)
-                .forEach(string::append);
-        string.append(text);
-        Stream.generate(() -> background)
-                .limit(horizontalLength-text.length()-padding-2)
-                .forEach(string::append);
-        string.append(vertical);
-        return string.toString();
+        sink.append(vertical);
+        appendRun(sink, background, padding);
+        sink.append(text);
+        appendRun(sink, background, horizontalLength-text.length()-padding-2);
+        return sink.append(vertical);
     }
 
     /**
@@ -480,6 +550,20 @@ public class UIComponents {
      * @throws IllegalStateException when the text cannot fit.
      */
     public String rightString(String text, int padding) {
+        return rightString(new StringBuilder(horizontalLength), text, padding).toString();
+    }
+
+    /**
+     * Write the given text on the right side padded with the given
+     * amount into the sink.
+     * @param sink - the StringBuilder to write into.
+     * @param text - the String given to be printed.
+     * @param padding - an integer indicating the padding
+     * @return the sink
+     * @throws IllegalArgumentException when argument passed is null.
+     * @throws IllegalStateException when the text cannot fit.
+     */
+    public StringBuilder rightString(StringBuilder sink, String text, int padding) {
         if (text.isEmpty())
             throw new IllegalArgumentException("Argument passed is null");
 
@@ -489,17 +573,11 @@ public class UIComponents {
         if (text.length() > horizontalLength - 2)
             throw new IllegalStateException("Text passed is too long.");
 
-        StringBuilder string = new StringBuilder();
-        string.append(vertical);
-        Stream.generate(() -> background)
-                .limit(horizontalLength-text.length()-padding-2)
-                .forEach(string::append);
-        string.append(text);
-        Stream.generate(() -> background)
-                .limit(padding)
-                .forEach(string::append);
-        string.append(vertical);
-        return string.toString();
+        sink.append(vertical);
+        appendRun(sink, background, horizontalLength-text.length()-padding-2);
+        sink.append(text);
+        appendRun(sink, background, padding);
+        return sink.append(vertical);
     }
 
     /**Return an error String to print into the console.
@@ -526,6 +604,25 @@ public class UIComponents {
         return warningString + message;
     }
 
+    /**
+     * Append the character count times to the sink in bulk, copying
+     * from a run of that character built once and shared by every
+     * UIComponents.
+     *
+     * @param sink the StringBuilder to write into.
+     * @param material the character to repeat.
+     * @param count how many times to repeat it.
+     * @return the sink
+     * @throws IllegalArgumentException when count is < 0.
+     */
+    public static StringBuilder appendRun(StringBuilder sink, char material, int count) {
+        if (count < 0)
+            throw new IllegalArgumentException("count must be >= 0, got " + count);
+        String run = runs.computeIfAbsent(material, c -> String.valueOf(c).repeat(MAX_RUN));
+        for (; count > MAX_RUN; count -= MAX_RUN) sink.append(run);
+        return sink.append(run, 0, count);
+    }
+
     /* A bunch of setters and getters */
 
     public static char getVertical() {
@@ -0,0 +1,178 @@
+package utils;
+
+import java.util.*;
+
+/**A UI layout compiled once and rendered many times with different
+ * values, see UIBuilder.compile().
+ * <p>Slots are written as {name} anywhere in the layout, e.g.
+ * leftString("{user}", 2). A slot owns its placeholder plus the padding
+ * next to it, so a value may be as wide as that without moving the walls.
+ * Compiled from a UIBuilder, a slot is aligned like the component it was
+ * written in: a leftString slot takes the padding after it, a rightString
+ * slot the padding before it and a header slot both, its value being
+ * centered. So a slot that is the whole text of its component renders
+ * exactly as the component would with the value. Widths are worked out
+ * when compiling, so rendering is one copy of the fixed segments and the
+ * values.
+ * @author hatohui
+ * */
+public class UITemplate {
+    private final String[] segments;
+    private final String[] names;
+    private final int[] widths;
+    private final Align[] aligns;
+    private final int length;
+
+    /**Where a value sits in its slot.
+     * */
+    enum Align { LEFT, RIGHT, CENTER }
+
+    private UITemplate(List<String> segments, List<String> names, List<Integer> widths,
+                       List<Align> aligns) {
+        this.segments = segments.toArray(new String[0]);
+        this.names = names.toArray(new String[0]);
+        this.widths = new int[widths.size()];
+        this.aligns = aligns.toArray(new Align[0]);
+        int total = 0;
+        for (String segment : segments) total += segment.length();
+        for (int i = 0; i < this.widths.length; i++) {
+            this.widths[i] = widths.get(i);
+            total += this.widths[i];
+        }
+        this.length = total;
+    }
+
+    /**Compile a layout holding {name} slots. Without the components to
+     * go by, a slot is left aligned, or right aligned when nothing but the
+     * wall follows it; use UIBuilder.compile() to keep headers centered.
+     * @param layout the UI, usually from UIBuilder.saveToString().
+     * @return the compiled template.
+     * @throws IllegalArgumentException when the layout has no slot.
+     * */
+    public static UITemplate compile(String layout) {
+        return compile(List.of(layout), Collections.singletonList(null));
+    }
+
+    /**Compile the components of a UI, each slot aligned like the
+     * component it is in.
+     * @param aligns the alignment of each component, null to work it out
+     *               from the layout the way compile(String) does.
+     * @throws IllegalArgumentException when no component has a slot.
+     * */
+    static UITemplate compile(List<String> components, List<Align> aligns) {
+        char background = UIComponents.getBackground();
+        ArrayList<String> segments = new ArrayList<>();
+        ArrayList<String> names = new ArrayList<>();
+        ArrayList<Integer> widths = new ArrayList<>();
+        ArrayList<Align> slotAligns = new ArrayList<>();
+        StringBuilder segment = new StringBuilder();
+
+        for (int c = 0; c < components.size(); c++) {
+            String layout = components.get(c);
+            int segmentStart = 0;
+            int i = 0;
+            while (i < layout.length()) {
+                int end = slotEnd(layout, i);
+                if (end < 0) {
+                    i++;
+                    continue;
+                }
+                int from = i;
+                int to = end;
+                Align align = aligns.get(c);
+                if (align != Align.RIGHT) {
+                    while (to < layout.length() && layout.charAt(to) == background) to++;
+                }
+                //nothing to grow into on the right, take the padding on the left
+                if (align == null) align = to == end ? Align.RIGHT : Align.LEFT;
+                if (align != Align.LEFT) {
+                    while (from > segmentStart && layout.charAt(from - 1) == background) from--;
+                }
+                segments.add(segment.append(layout, segmentStart, from).toString());
+                segment.setLength(0);
+                names.add(layout.substring(i + 1, end - 1));
+                widths.add(to - from);
+                slotAligns.add(align);
+                segmentStart = to;
+                i = to;
+            }
+            segment.append(layout, segmentStart, layout.length());
+        }
+        if (names.isEmpty())
+            throw new IllegalArgumentException("The layout has no {slot} to fill.");
+        segments.add(segment.toString());
+        return new UITemplate(segments, names, widths, slotAligns);
+    }
+
+    /**Render the template with the given values.
+     * @param values the value of every slot, by name.
+     * @return the UI as a String.
+     * @throws IllegalArgumentException when a slot has no value or a
+     * value doesn't fit its slot.
+     * */
+    public String render(Map<String, String> values) {
+        return render(new StringBuilder(length), values).toString();
+    }
+
+    /**Render the template with the given values into the sink.
+     * @param sink the StringBuilder to write into.
+     * @param values the value of every slot, by name.
+     * @return the sink
+     * @throws IllegalArgumentException when a slot has no value or a
+     * value doesn't fit its slot.
+     * */
+    public StringBuilder render(StringBuilder sink, Map<String, String> values) {
+        char background = UIComponents.getBackground();
+        int start = sink.length();
+        sink.ensureCapacity(start + length);
+        for (int i = 0; i < names.length; i++) {
+            String value = values.get(names[i]);
+            if (value == null || value.length() > widths[i] || value.indexOf('\n') >= 0) {
+                sink.setLength(start);
+                throw new IllegalArgumentException(value == null
+                        ? "No value for slot {" + names[i] + "}"
+                        : "Value for slot {" + names[i] + "} doesn't fit in " + widths[i] + " characters");
+            }
+            sink.append(segments[i]);
+            int padding = widths[i] - value.length();
+            if (aligns[i] == Align.RIGHT) {
+                UIComponents.appendRun(sink, background, padding).append(value);
+            } else if (aligns[i] == Align.CENTER) {
+                //the odd space goes on the right, as header() does
+                UIComponents.appendRun(sink, background, padding / 2).append(value);
+                UIComponents.appendRun(sink, background, padding - padding / 2);
+            } else {
+                UIComponents.appendRun(sink.append(value), background, padding);
+            }
+        }
+        return sink.append(segments[names.length]);
+    }
+
+    /**Return the name of every slot, in layout order.
+     * */
+    public Set<String> slots() {
+        return new LinkedHashSet<>(Arrays.asList(names));
+    }
+
+    /**Return how many characters a value of the slot may have,
+     * the smallest width when the slot appears more than once.
+     * @throws IllegalArgumentException when there is no such slot.
+     * */
+    public int width(String name) {
+        int width = -1;
+        for (int i = 0; i < names.length; i++) {
+            if (names[i].equals(name) && (width < 0 || widths[i] < width)) width = widths[i];
+        }
+        if (width < 0) throw new IllegalArgumentException("No slot named {" + name + "}");
+        return width;
+    }
+
+    //end (past the '}') of a {name} slot starting at from, or -1
+    private static int slotEnd(String layout, int from) {
+        if (layout.charAt(from) != '{') return -1;
+        int i = from + 1;
+        while (i < layout.length() && (Character.isLetterOrDigit(layout.charAt(i)) || layout.charAt(i) == '_')) i++;
+        if (i == from + 1 || i == layout.length() || layout.charAt(i) != '}') return -1;
+        return i + 1;
+    }
+}
@@ -1,6 +1,9 @@
 package utils;
 
 public class UserInterface {
+    private static final String ESC = "\u001B[";
+    //the lines currently on the console, shared since every UserInterface prints to the same one
+    private static String[] screen;
     private String UI;
 
     /**
@@ -32,7 +35,72 @@ public class UserInterface {
      * Print out the UI to the console.
      */
     public void deploy() {
-        for (int i = 0; i < 20; i++) System.out.println("\n");
-        System.out.print(this.UI);
+        synchronized (UserInterface.class) {
+            //the console no longer shows what update() drew, its next call starts over
+            screen = null;
+            for (int i = 0; i < 20; i++) System.out.println("\n");
+            System.out.print(this.UI);
+        }
+    }
+
+    /**
+     * Print out the UI to the console, only redrawing what changed since
+     * the last update().
+     * <p>The first time the screen is cleared and the whole UI printed.
+     * After that the UI is compared line by line with the one on the
+     * console and only the lines that changed are printed, moving the
+     * cursor to them, so updating one value costs a few bytes instead of
+     * the whole screen. The cursor is then put back under the UI and
+     * everything below it is cleared, e.g. a prompt printed since. Use
+     * redraw() when something scrolled the UI away.
+     */
+    public void update() {
+        String[] lines = UI.split("\n");
+        synchronized (UserInterface.class) {
+            if (screen == null) {
+                print(fullFrame(lines));
+            } else {
+                print(changedLines(screen, lines));
+            }
+            screen = lines;
+        }
+    }
+
+    /**
+     * Clear the console and print the whole UI again, e.g. after
+     * something else printed over it.
+     */
+    public void redraw() {
+        String[] lines = UI.split("\n");
+        synchronized (UserInterface.class) {
+            print(fullFrame(lines));
+            screen = lines;
+        }
+    }
+
+    private static StringBuilder fullFrame(String[] lines) {
+        StringBuilder frame = new StringBuilder(ESC + "H" + ESC + "2J");
+        for (String line : lines) frame.append(line).append('\n');
+        return frame;
+    }
+
+    //moves to each changed row, rewrites it and clears what's left of the old one
+    private static StringBuilder changedLines(String[] previous, String[] lines) {
+        StringBuilder frame = new StringBuilder();
+        int rows = Math.max(previous.length, lines.length);
+        for (int row = 0; row < rows; row++) {
+            String now = row < lines.length ? lines[row] : "";
+            String before = row < previous.length ? previous[row] : "";
+            if (now.equals(before)) continue;
+            frame.append(ESC).append(row + 1).append(";1H").append(now).append(ESC).append('K');
+        }
+        //leave the cursor under the UI, where a full print would have left it, and clear what was printed there
+        return frame.append(ESC).append(lines.length + 1).append(";1H").append(ESC).append('J');
+    }
+
+    private static void print(StringBuilder frame) {
+        if (frame.length() == 0) return;
+        System.out.print(frame);
+        System.out.flush();
     }
 }
@@ -0,0 +1,176 @@
+package utils;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.zip.CRC32;
+
+/**A side file recording the changes made to a FileIO since its
+ * last commit, so they can be replayed after a crash.
+ * <p>Each record is [type:1][length:4][payload][crc32:4]. A commit
+ * writes an intent record describing the expected result first, which
+ * tells recovery whether the data file was fully written.
+ * */
+final class WriteAheadLog implements Closeable {
+    static final byte APPEND = 'A';
+    static final byte REMOVE = 'R';
+    static final byte COMMIT_APPEND = 'C';
+    static final byte COMMIT_REWRITE = 'W';
+    private final FileChannel channel;
+    private int syncEvery;
+    private int unsynced;
+    private long commitStart = -1;
+
+    /**Open (or create) the log.
+     * @param syncEvery how many records may be written before the
+     *                  log is forced to disk, 1 syncs every record.
+     * */
+    WriteAheadLog(Path path, int syncEvery) throws IOException {
+        channel = FileChannel.open(path, StandardOpenOption.CREATE,
+                StandardOpenOption.READ, StandardOpenOption.WRITE);
+        setSyncEvery(syncEvery);
+        channel.position(channel.size());
+    }
+
+    void setSyncEvery(int syncEvery) {
+        if (syncEvery < 1)
+            throw new IllegalArgumentException("syncEvery must be at least 1");
+        this.syncEvery = syncEvery;
+    }
+
+    int getSyncEvery() {
+        return syncEvery;
+    }
+
+    /**Log an append or a removal of the given line.
+     * */
+    void log(byte type, String value) throws IOException {
+        write(type, value.getBytes(StandardCharsets.UTF_8));
+        if (++unsynced >= syncEvery) sync();
+    }
+
+    /**Log that a commit is about to change the data file, always synced.
+     * @param first the file length before an append, or the length of the rewritten file.
+     * @param second the file length after an append, or the CRC32 of the rewritten file.
+     * */
+    void logCommit(byte type, long first, long second) throws IOException {
+        commitStart = channel.position();
+        write(type, ByteBuffer.allocate(16).putLong(first).putLong(second).array());
+        sync();
+    }
+
+    /**Drop the commit intent after a failed commit, the logged
+     * changes are still pending.
+     * */
+    void abortCommit() throws IOException {
+        if (commitStart < 0) return;
+        truncate(commitStart);
+        commitStart = -1;
+    }
+
+    /**Empty the log once its changes are in the data file.
+     * */
+    void reset() throws IOException {
+        truncate(0);
+        commitStart = -1;
+    }
+
+    /**Cut the log at the given position and force it to disk.
+     * */
+    void truncate(long position) throws IOException {
+        channel.truncate(position);
+        channel.position(position);
+        channel.force(false);
+        unsynced = 0;
+    }
+
+    /**Return true when the log holds no record.
+     * */
+    boolean isEmpty() throws IOException {
+        return channel.size() == 0;
+    }
+
+    void sync() throws IOException {
+        channel.force(false);
+        unsynced = 0;
+    }
+
+    /**Read every complete record from the start of the log. A torn or
+     * corrupt tail left by a crash is cut off.
+     * */
+    List<Record> read() throws IOException {
+        ArrayList<Record> records = new ArrayList<>();
+        long position = 0;
+        long size = channel.size();
+        ByteBuffer header = ByteBuffer.allocate(5);
+        ByteBuffer trailer = ByteBuffer.allocate(4);
+        while (position + 9 <= size) {
+            header.clear();
+            channel.read(header, position);
+            byte type = header.get(0);
+            int length = header.getInt(1);
+            if (length < 0 || position + 9 + length > size) break;
+
+            ByteBuffer payload = ByteBuffer.allocate(length);
+            channel.read(payload, position + 5);
+            trailer.clear();
+            channel.read(trailer, position + 5 + length);
+            CRC32 crc = new CRC32();
+            crc.update(header.array());
+            crc.update(payload.array());
+            if ((int) crc.getValue() != trailer.getInt(0)) break;
+
+            records.add(new Record(type, payload.array(), position));
+            position += 9 + length;
+        }
+        if (position < size) truncate(position);
+        channel.position(position);
+        return records;
+    }
+
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+
+    private void write(byte type, byte[] payload) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(9 + payload.length);
+        buffer.put(type).putInt(payload.length).put(payload);
+        CRC32 crc = new CRC32();
+        crc.update(buffer.array(), 0, 5 + payload.length);
+        buffer.putInt((int) crc.getValue()).flip();
+        while (buffer.hasRemaining()) channel.write(buffer);
+    }
+
+    /**A record read back from the log.
+     * */
+    static final class Record {
+        final byte type;
+        final byte[] payload;
+        final long position;
+
+        private Record(byte type, byte[] payload, long position) {
+            this.type = type;
+            this.payload = payload;
+            this.position = position;
+        }
+
+        String value() {
+            return new String(payload, StandardCharsets.UTF_8);
+        }
+
+        long first() {
+            return ByteBuffer.wrap(payload).getLong(0);
+        }
+
+        long second() {
+            return ByteBuffer.wrap(payload).getLong(8);
+        }
+    }
+}